@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package m3r7.android.vibrator.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the JMH benchmarks of {@link PatternBenchmarks} and
+ * {@link CommandBenchmarks} over synthetic libraries of 10 to 10,000
+ * patterns with 2 to 5,000 segments each, skipping libraries of more than
+ * {@link #MAX_LIBRARY_SEGMENTS} segments in total, with the GC profiler for
+ * allocation per operation and allocation rate. Needs JMH (jmh-core and
+ * jmh-generator-annprocess, with jopt-simple and commons-math3) and only the
+ * platform free sources, {@link PersistenceBench} is built separately. From
+ * the project root, with JMH=jmh-core.jar:jmh-generator-annprocess.jar and
+ * JMH_RUN=jmh-core.jar:jopt-simple.jar:commons-math3.jar :
+ * 
+ * <pre>
+ * javac -encoding UTF-8 -cp $JMH \
+ *     -processor org.openjdk.jmh.generators.BenchmarkProcessor \
+ *     -d bin/bench gen/m3r7/android/vibrator/R.java \
+ *     src/m3r7/android/vibrator/I*.java \
+ *     src/m3r7/android/vibrator/pattern/*.java \
+ *     src/m3r7/android/vibrator/command/*.java \
+ *     bench/src/m3r7/android/vibrator/bench/BenchMain.java \
+ *     bench/src/m3r7/android/vibrator/bench/SyntheticLibrary.java \
+ *     bench/src/m3r7/android/vibrator/bench/PatternBenchmarks.java \
+ *     bench/src/m3r7/android/vibrator/bench/CommandBenchmarks.java
+ * java -cp bin/bench:$JMH_RUN m3r7.android.vibrator.bench.BenchMain \
+ *     [--quick] [filter]
+ * </pre>
+ * 
+ * --quick runs a single fork with short warmup and measurement, filter is a
+ * regular expression restricting the run to benchmark methods it matches.
+ * The results end with a table of every benchmark with its error at 99.9%
+ * confidence. JMH's own main, {@code org.openjdk.jmh.Main}, runs the same
+ * benchmarks with its usual options, but over every combination of the
+ * parameters, including the largest libraries.
+ */
+public final class BenchMain {
+
+	static final long SEED = 42L;
+
+	private static final int[] PATTERN_COUNTS = { 10, 100, 1000, 10000 };
+	private static final int[] SEGMENT_COUNTS = { 2, 50, 500, 5000 };
+	private static final long MAX_LIBRARY_SEGMENTS = 5000000L;
+
+	private BenchMain() {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		boolean quick = false;
+		String filter = "";
+		for (String arg : args) {
+			if ("--quick".equals(arg)) {
+				quick = true;
+			} else {
+				filter = arg;
+			}
+		}
+		final Collection<RunResult> results = new ArrayList<RunResult>();
+		for (int patternCount : PATTERN_COUNTS) {
+			for (int segmentCount : SEGMENT_COUNTS) {
+				if ((long) patternCount * segmentCount > MAX_LIBRARY_SEGMENTS) {
+					continue;
+				}
+				results.addAll(run(options(PatternBenchmarks.class, filter,
+						quick).param("patterns", String.valueOf(patternCount))
+						.param("segments", String.valueOf(segmentCount))));
+			}
+		}
+		results.addAll(run(options(CommandBenchmarks.class, filter, quick)));
+		ResultFormatFactory.getInstance(ResultFormatType.TEXT, System.out)
+				.writeOut(results);
+	}
+
+	private static ChainedOptionsBuilder options(Class<?> benchmarks,
+			String filter, boolean quick) {
+		final ChainedOptionsBuilder options = new OptionsBuilder().include(
+				"^" + Pattern.quote(benchmarks.getName() + ".") + ".*(?:"
+						+ filter + ")").addProfiler(GCProfiler.class);
+		if (quick) {
+			options.forks(1).warmupIterations(2).warmupTime(
+					TimeValue.milliseconds(200)).measurementIterations(3)
+					.measurementTime(TimeValue.milliseconds(200));
+		}
+		return options;
+	}
+
+	/**
+	 * @return the results, none if filter matches no benchmark
+	 */
+	private static Collection<RunResult> run(ChainedOptionsBuilder options)
+			throws RunnerException {
+		try {
+			return new Runner(options.build()).run();
+		} catch (NoBenchmarksException e) {
+			return new ArrayList<RunResult>();
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package m3r7.android.vibrator.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import m3r7.android.vibrator.ICommand;
+import m3r7.android.vibrator.ICommandTarget;
+import m3r7.android.vibrator.command.CommandMaker;
+import m3r7.android.vibrator.command.CommandRegistry;
+import m3r7.android.vibrator.command.CommandVocabulary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Turning recognizer hypotheses into commands, with every pattern of the
+ * library in the vocabulary. The utterances cycle through exact command and
+ * pattern names, names surrounded by other words, misspellings and phrases
+ * matching nothing. Matching does not depend on the length of the patterns,
+ * so only the library size is a parameter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CommandBenchmarks {
+
+	// R.array.command_names of the default locale
+	private static final String[] COMMAND_NAMES = { "Begin", "Stop", "Slow",
+			"Fast", "{Pattern Name}", "Manual" };
+	// the names above that are said as they are
+	private static final int[] VOICE_COMMANDS = { 0, 1, 2, 3, 5 };
+	private static final float THRESHOLD = 0.75f;
+	private static final int UTTERANCES = 64;
+	private static final int SEGMENTS = 2;
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int patterns;
+
+	private CommandRegistry registry;
+	private List<String> names;
+	private CommandVocabulary vocabulary;
+	private List<List<String>> utterances;
+	private final float[] confidences = { 0.9f, 0.6f, 0.3f };
+	private int next;
+
+	@Setup
+	public void setUp() {
+		registry = new CommandRegistry(new NoTarget());
+		names = new SyntheticLibrary(patterns, SEGMENTS, BenchMain.SEED)
+				.getNames();
+		vocabulary = new CommandVocabulary(COMMAND_NAMES, names);
+		utterances = makeUtterances(names);
+		next = 0;
+	}
+
+	@Benchmark
+	public ICommand makeExact() {
+		return CommandMaker.make(nextUtterance(), vocabulary, registry);
+	}
+
+	@Benchmark
+	public ICommand makeFuzzy() {
+		return CommandMaker.make(nextUtterance(), confidences, vocabulary,
+				THRESHOLD, registry);
+	}
+
+	@Benchmark
+	public ICommand makePartial() {
+		return CommandMaker.makePartial(nextUtterance(), vocabulary, registry);
+	}
+
+	@Benchmark
+	public CommandVocabulary buildVocabulary() {
+		return new CommandVocabulary(COMMAND_NAMES, names);
+	}
+
+	private List<String> nextUtterance() {
+		if (next == UTTERANCES) {
+			next = 0;
+		}
+		return utterances.get(next++);
+	}
+
+	/**
+	 * @return utterances of three hypotheses each, the first one being the
+	 *         most likely
+	 */
+	private static List<List<String>> makeUtterances(List<String> names) {
+		final List<List<String>> utterances = new ArrayList<List<String>>(
+				UTTERANCES);
+		for (int i = 0; i < UTTERANCES; i++) {
+			final String name = names.get(i * 7919 % names.size());
+			final String command = COMMAND_NAMES[VOICE_COMMANDS[i
+					% VOICE_COMMANDS.length]];
+			final String hypothesis;
+			switch (i % 4) {
+			case 0:
+				hypothesis = name;
+				break;
+			case 1:
+				hypothesis = "please " + command + " now";
+				break;
+			case 2:
+				// drop a letter
+				hypothesis = name.substring(1);
+				break;
+			default:
+				hypothesis = "nothing to see here";
+				break;
+			}
+			utterances.add(Collections.unmodifiableList(Arrays.asList(
+					hypothesis, command.toUpperCase(), "noise")));
+		}
+		return utterances;
+	}
+
+	private static class NoTarget implements ICommandTarget {
+
+		@Override
+		public void actionStartVibrator() {
+		}
+
+		@Override
+		public void actionStopVibrator() {
+		}
+
+		@Override
+		public void actionIncreaseFreq() {
+		}
+
+		@Override
+		public void actionDecreaseFreq() {
+		}
+
+		@Override
+		public void actionScale(int steps) {
+		}
+
+		@Override
+		public void actionSelectPattern(String patternName) {
+		}
+
+		@Override
+		public void actionDisableVoice() {
+		}
+
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package m3r7.android.vibrator.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import m3r7.android.vibrator.IVibrationPattern;
+import m3r7.android.vibrator.IVibrationPattern.Scalability;
+import m3r7.android.vibrator.pattern.Timeline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-pattern hot paths : scaling, the scalability check and building
+ * what is handed to the vibrator. Every invocation works on the next pattern
+ * of the library, so the whole library is the working set.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PatternBenchmarks {
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int patterns;
+
+	@Param({ "2", "50", "500", "5000" })
+	public int segments;
+
+	private SyntheticLibrary library;
+	private long[] buffer;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		library = new SyntheticLibrary(patterns, segments, BenchMain.SEED);
+		buffer = new long[segments * 2 + 1];
+		next = 0;
+	}
+
+	@Benchmark
+	public IVibrationPattern scale() {
+		// alternate between slower and faster, both are legal
+		final int modifier = (next & 1) == 0 ? 1 : -1;
+		return nextPattern().scale(modifier);
+	}
+
+	@Benchmark
+	public Scalability isScalable() {
+		final int modifier = (next & 3) - 1;
+		return nextPattern().isScalable(modifier);
+	}
+
+	@Benchmark
+	public long[] getVibratable() {
+		return nextPattern().getVibratable(0L);
+	}
+
+	@Benchmark
+	public long[] getVibratableIntoBuffer() {
+		nextPattern().getVibratable(0L, buffer);
+		return buffer;
+	}
+
+	@Benchmark
+	public Timeline getTempoVariant() {
+		return nextPattern().getTempoVariant(1.25);
+	}
+
+	@Benchmark
+	public int[] timelineToArray() {
+		return nextPattern().getTimeline().toArray();
+	}
+
+	private IVibrationPattern nextPattern() {
+		if (next == library.size()) {
+			next = 0;
+		}
+		return library.get(next++);
+	}
+
+}
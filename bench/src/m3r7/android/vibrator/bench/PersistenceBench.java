@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import m3r7.android.vibrator.IPersister;
+import m3r7.android.vibrator.IVibrationPattern;
+import m3r7.android.vibrator.persistance.JdbcPersister;
+
+/**
+ * Measures how the pattern store scales with library size : cold load of all
+ * patterns and of the index, full save and single pattern update, each
+ * against a fresh database file per library size. Uses {@link JdbcPersister},
+ * so a JDBC driver for SQLite must be on the class path. From the project
+ * root :
+ * 
+ * <pre>
+ * javac -encoding UTF-8 -d bin/persistence gen/m3r7/android/vibrator/R.java \
+ *     src/m3r7/android/vibrator/I*.java \
+ *     src/m3r7/android/vibrator/pattern/*.java \
+ *     src/m3r7/android/vibrator/persistance/PatternTable.java \
+ *     bench/src/m3r7/android/vibrator/persistance/*.java \
+ *     bench/src/m3r7/android/vibrator/bench/SyntheticLibrary.java \
+ *     bench/src/m3r7/android/vibrator/bench/PersistenceBench.java
+ * java -cp bin/persistence:sqlite-jdbc.jar \
+ *     -Dbench.revision=$(git rev-parse HEAD) \
+ *     m3r7.android.vibrator.bench.PersistenceBench [--quick] [url-prefix]
+ * </pre>
+ * 
+ * url-prefix, jdbc:sqlite: by default, is followed by the path of the
+ * database file. Results are written to standard output as JSON : the
+ * revision given by the bench.revision property, the time of the run, the
+ * schema version and one entry per (library size, operation) with the
+ * median, minimum and maximum latency in nanoseconds.
+ */
+public final class PersistenceBench {
+
+	private static final int[] PATTERN_COUNTS = { 10, 100, 1000, 10000 };
+	private static final int SEGMENT_COUNT = 50;
+	private static final long SEED = 42L;
+	private static final String REVISION_PROPERTY = "bench.revision";
+
+	private PersistenceBench() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		boolean quick = false;
+		String urlPrefix = "jdbc:sqlite:";
+		for (String arg : args) {
+			if ("--quick".equals(arg)) {
+				quick = true;
+			} else {
+				urlPrefix = arg;
+			}
+		}
+		final int iterations = quick ? 3 : 10;
+		final StringBuilder json = new StringBuilder();
+		json.append("{\"benchmark\":\"persistence\",\"revision\":");
+		appendString(json, System.getProperty(REVISION_PROPERTY, "unknown"));
+		json.append(",\"timestamp\":");
+		appendString(json, getTimestamp());
+		json.append(",\"schemaVersion\":").append(JdbcPersister.SCHEMA_VERSION);
+		json.append(",\"javaVersion\":");
+		appendString(json, System.getProperty("java.version"));
+		json.append(",\"urlPrefix\":");
+		appendString(json, urlPrefix);
+		json.append(",\"segments\":").append(SEGMENT_COUNT);
+		json.append(",\"iterations\":").append(iterations);
+		json.append(",\"results\":[");
+		boolean first = true;
+		for (int patternCount : PATTERN_COUNTS) {
+			final File file = File.createTempFile("vibrator-bench", ".db");
+			try {
+				final Map<String, long[]> timings = run(urlPrefix
+						+ file.getPath(), new SyntheticLibrary(patternCount,
+						SEGMENT_COUNT, SEED), iterations);
+				for (Map.Entry<String, long[]> timing : timings.entrySet()) {
+					if (!first) {
+						json.append(',');
+					}
+					first = false;
+					appendResult(json, patternCount, timing.getKey(), timing
+							.getValue());
+				}
+			} finally {
+				file.delete();
+			}
+		}
+		json.append("]}");
+		System.out.println(json);
+	}
+
+	/**
+	 * @return nanoseconds per iteration by operation name
+	 */
+	private static Map<String, long[]> run(String url,
+			SyntheticLibrary library, int iterations) {
+		final Map<String, IVibrationPattern> patterns = new HashMap<String, IVibrationPattern>();
+		final IVibrationPattern[] updates = new IVibrationPattern[iterations + 1];
+		for (int i = 0; i < library.size(); i++) {
+			patterns.put(library.get(i).getName(), library.get(i));
+		}
+		for (int i = 0; i < updates.length; i++) {
+			updates[i] = library.get(i).scale(1);
+		}
+		final Map<String, long[]> timings = new LinkedHashMap<String, long[]>();
+		final long[] fullSave = new long[iterations];
+		final long[] singleUpdate = new long[iterations];
+		final IPersister persister = new JdbcPersister(url);
+		try {
+			// the first round of each operation is not timed
+			for (int i = -1; i < iterations; i++) {
+				persister.deletePatterns();
+				final long start = System.nanoTime();
+				persister.savePatterns(patterns);
+				record(fullSave, i, System.nanoTime() - start);
+			}
+			for (int i = -1; i < iterations; i++) {
+				final long start = System.nanoTime();
+				persister.upsertPattern(updates[i + 1]);
+				record(singleUpdate, i, System.nanoTime() - start);
+			}
+		} finally {
+			persister.closeDB();
+		}
+		final long[] coldLoad = new long[iterations];
+		final long[] indexLoad = new long[iterations];
+		for (int i = -1; i < iterations; i++) {
+			long start = System.nanoTime();
+			IPersister cold = new JdbcPersister(url);
+			check(cold.getPatternsMap(), library.size());
+			cold.closeDB();
+			record(coldLoad, i, System.nanoTime() - start);
+			start = System.nanoTime();
+			cold = new JdbcPersister(url);
+			check(cold.getPatternIndex(), library.size());
+			cold.closeDB();
+			record(indexLoad, i, System.nanoTime() - start);
+		}
+		timings.put("coldLoad", coldLoad);
+		timings.put("indexLoad", indexLoad);
+		timings.put("fullSave", fullSave);
+		timings.put("singleUpdate", singleUpdate);
+		return timings;
+	}
+
+	/**
+	 * @return the current time in ISO 8601 format, UTC
+	 */
+	private static String getTimestamp() {
+		final SimpleDateFormat format = new SimpleDateFormat(
+				"yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.format(new Date());
+	}
+
+	private static void record(long[] timings, int iteration, long nanos) {
+		if (iteration >= 0) {
+			timings[iteration] = nanos;
+		}
+	}
+
+	private static void check(Map<String, IVibrationPattern> loaded,
+			int expected) {
+		if (loaded.size() != expected) {
+			throw new IllegalStateException("Loaded " + loaded.size()
+					+ " patterns, saved " + expected);
+		}
+	}
+
+	private static void appendResult(StringBuilder json, int patternCount,
+			String operation, long[] nanos) {
+		final long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		json.append("{\"patterns\":").append(patternCount);
+		json.append(",\"operation\":");
+		appendString(json, operation);
+		json.append(",\"medianNanos\":").append(sorted[sorted.length / 2]);
+		json.append(",\"minNanos\":").append(sorted[0]);
+		json.append(",\"maxNanos\":").append(sorted[sorted.length - 1]);
+		json.append('}');
+	}
+
+	private static void appendString(StringBuilder json, String str) {
+		json.append('"');
+		for (int i = 0; i < str.length(); i++) {
+			final char c = str.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+}
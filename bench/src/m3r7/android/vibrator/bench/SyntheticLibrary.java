@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import m3r7.android.vibrator.IVibrationPattern;
+import m3r7.android.vibrator.pattern.PatternMaker;
+import m3r7.android.vibrator.pattern.Timeline;
+
+/**
+ * Reproducible pattern library of a given size. Durations are random within
+ * bounds that leave every pattern scalable in both directions, the last
+ * silence is 0 as in captured patterns.
+ */
+public final class SyntheticLibrary {
+
+	private static final int MIN_DURATION = 100;
+	private static final int MAX_DURATION = 2000;
+
+	private final IVibrationPattern[] patterns;
+	private final List<String> names;
+
+	public SyntheticLibrary(int patternCount, int segmentCount, long seed) {
+		final Random random = new Random(seed);
+		patterns = new IVibrationPattern[patternCount];
+		names = new ArrayList<String>(patternCount);
+		for (int p = 0; p < patternCount; p++) {
+			final Timeline.Builder builder = new Timeline.Builder(segmentCount);
+			for (int s = 0; s < segmentCount; s++) {
+				final int silence = s == segmentCount - 1 ? 0 : duration(random);
+				builder.add(duration(random), silence);
+			}
+			final String name = makeName(random, p);
+			patterns[p] = PatternMaker.make(name, builder.build());
+			names.add(name);
+		}
+	}
+
+	private static int duration(Random random) {
+		return MIN_DURATION + random.nextInt(MAX_DURATION - MIN_DURATION);
+	}
+
+	/**
+	 * @return a pronounceable name made unique by its index
+	 */
+	private static String makeName(Random random, int index) {
+		final String consonants = "bdfgklmnprstvz";
+		final String vowels = "aeiou";
+		final StringBuilder sb = new StringBuilder();
+		final int syllables = 2 + random.nextInt(3);
+		for (int i = 0; i < syllables; i++) {
+			sb.append(consonants.charAt(random.nextInt(consonants.length())));
+			sb.append(vowels.charAt(random.nextInt(vowels.length())));
+		}
+		return sb.append(' ').append(index).toString();
+	}
+
+	public int size() {
+		return patterns.length;
+	}
+
+	public IVibrationPattern get(int i) {
+		return patterns[i % patterns.length];
+	}
+
+	public List<String> getNames() {
+		return names;
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package m3r7.android.vibrator.pattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares {@link CaptureRecorder} with the list arithmetic the capture
+ * screen used before it, over random tap sequences : a boxed duration per
+ * touch event, padded at the end with the vibration or silence up to the
+ * capture time. From the project root :
+ * 
+ * <pre>
+ * javac -encoding UTF-8 -d bin/check gen/m3r7/android/vibrator/R.java \
+ *     src/m3r7/android/vibrator/I*.java \
+ *     src/m3r7/android/vibrator/pattern/*.java \
+ *     bench/src/m3r7/android/vibrator/pattern/CaptureRecorderCheck.java
+ * java -cp bin/check m3r7.android.vibrator.pattern.CaptureRecorderCheck
+ * </pre>
+ * 
+ * Throws an AssertionError at the first capture that differs.
+ */
+public final class CaptureRecorderCheck {
+
+	private static final int CAPTURES = 100000;
+	private static final long SEED = 42L;
+
+	private CaptureRecorderCheck() {
+	}
+
+	public static void main(String[] args) {
+		final Random random = new Random(SEED);
+		// small initial capacity, so that growing is covered as well
+		final CaptureRecorder recorder = new CaptureRecorder(2);
+		for (int i = 0; i < CAPTURES; i++) {
+			final int duration = 1000 * (1 + random.nextInt(10));
+			final int maxGap = 1 + random.nextInt(i % 2 == 0 ? 400 : 4000);
+			final long start = random.nextInt(1000000);
+			final List<Integer> durations = new ArrayList<Integer>();
+			recorder.clear();
+			recorder.press(start);
+			long previous = start;
+			boolean pressed = true;
+			for (int events = random.nextInt(64); events > 0; events--) {
+				final long time = previous + random.nextInt(maxGap);
+				if (time - start > duration) {
+					break;// the capture timer finished first
+				}
+				durations.add((int) (time - previous));
+				previous = time;
+				if (pressed) {
+					recorder.release(time);
+				} else {
+					recorder.press(time);
+				}
+				pressed = !pressed;
+			}
+			final int[] expected = finishList(durations, duration);
+			final int[] actual = recorder.finish(
+					recorder.getStartTime() + duration).toArray();
+			if (!Arrays.equals(expected, actual)) {
+				throw new AssertionError("capture " + i + " : expected "
+						+ Arrays.toString(expected) + " but was "
+						+ Arrays.toString(actual));
+			}
+		}
+		System.out.println("CaptureRecorder : " + CAPTURES
+				+ " captures match");
+	}
+
+	/**
+	 * The padding done by the capture timer before CaptureRecorder.
+	 */
+	private static int[] finishList(List<Integer> durations,
+			int selectedDuration) {
+		long sum = 0L;
+		for (int duration : durations) {
+			sum += duration;
+		}
+		final long timeSinceLastEvent = selectedDuration - sum;
+		// an even size means the button was down when the capture finished
+		if (durations.size() % 2 == 0) {
+			if (timeSinceLastEvent > 0) {
+				durations.add((int) timeSinceLastEvent);
+				durations.add(0);
+			}
+		} else {
+			if (timeSinceLastEvent > 0) {
+				durations.add((int) timeSinceLastEvent);
+			} else {
+				durations.add(0);
+			}
+		}
+		final int[] array = new int[durations.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = durations.get(i);
+		}
+		return array;
+	}
+
+}
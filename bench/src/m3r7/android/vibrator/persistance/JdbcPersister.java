@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.persistance;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import m3r7.android.vibrator.IPersister;
+import m3r7.android.vibrator.IVibrationPattern;
+import m3r7.android.vibrator.pattern.PatternMaker;
+import m3r7.android.vibrator.pattern.Timeline;
+import m3r7.android.vibrator.pattern.TimelineCodec;
+
+/**
+ * Stand-in for {@link SQLitePersister} on a desktop JVM : the statements of
+ * {@link PatternTable} and the same encoding, run through JDBC against e.g. a
+ * sqlite-jdbc database file. Not thread-safe.
+ */
+public class JdbcPersister implements IPersister {
+
+	/**
+	 * version of the database schema, see SQLitePersister
+	 */
+	public static final int SCHEMA_VERSION = PatternTable.VERSION;
+
+	private Connection connection;
+	private PreparedStatement insertRow;
+	private PreparedStatement deleteByName;
+
+	/**
+	 * Opens the database at url and creates the table if needed.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the database cannot be opened
+	 */
+	public JdbcPersister(String url) {
+		try {
+			connection = DriverManager.getConnection(url);
+			final Statement statement = connection.createStatement();
+			try {
+				statement.execute(PatternTable.CREATE);
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("Cannot open " + url, e);
+		}
+	}
+
+	@Override
+	public void savePatterns(Map<String, IVibrationPattern> patterns) {
+		updatePatterns(patterns.values(), Collections.<String> emptySet());
+	}
+
+	@Override
+	public void deletePatterns() {
+		try {
+			final Statement statement = connection.createStatement();
+			try {
+				statement.executeUpdate(PatternTable.DELETE_ALL);
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void upsertPattern(IVibrationPattern pattern) {
+		updatePatterns(Collections.singleton(pattern), Collections
+				.<String> emptySet());
+	}
+
+	@Override
+	public void deletePattern(String name) {
+		updatePatterns(Collections.<IVibrationPattern> emptySet(),
+				Collections.singleton(name));
+	}
+
+	@Override
+	public void updatePatterns(Collection<IVibrationPattern> upserted,
+			Collection<String> deleted) {
+		if (upserted.isEmpty() && deleted.isEmpty()) {
+			return;
+		}
+		try {
+			if (insertRow == null) {
+				insertRow = connection
+						.prepareStatement(PatternTable.INSERT_ROW);
+				deleteByName = connection
+						.prepareStatement(PatternTable.DELETE_BY_NAME);
+			}
+			connection.setAutoCommit(false);
+			try {
+				for (String name : deleted) {
+					deleteByName.setString(1, name);
+					deleteByName.executeUpdate();
+				}
+				for (IVibrationPattern pattern : upserted) {
+					final Timeline timeline = pattern.getTimeline();
+					final byte[] data = TimelineCodec.encode(timeline);
+					insertRow.setString(1, pattern.getName());
+					insertRow.setLong(2, timeline.size());
+					insertRow.setLong(3, timeline.getTotalDuration());
+					insertRow.setLong(4, TimelineCodec.checksum(data));
+					insertRow.setBytes(5, data);
+					insertRow.executeUpdate();
+				}
+				connection.commit();
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public Map<String, IVibrationPattern> getPatternsMap() {
+		final Map<String, IVibrationPattern> patterns = new HashMap<String, IVibrationPattern>();
+		try {
+			final Statement statement = connection.createStatement();
+			try {
+				final ResultSet rs = statement
+						.executeQuery(PatternTable.SELECT_ALL);
+				while (rs.next()) {
+					final String name = rs.getString(PatternTable.NAME_COLUMN);
+					final Timeline timeline = decode(rs
+							.getBytes(PatternTable.TIMELINE_COLUMN), rs
+							.getLong(PatternTable.CHECKSUM_COLUMN));
+					if (timeline != null) {
+						patterns.put(name, PatternMaker.make(name, timeline));
+					}
+				}
+				rs.close();
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+		return patterns;
+	}
+
+	@Override
+	public Map<String, IVibrationPattern> getPatternIndex() {
+		final Map<String, IVibrationPattern> index = new HashMap<String, IVibrationPattern>();
+		try {
+			final Statement statement = connection.createStatement();
+			try {
+				final ResultSet rs = statement
+						.executeQuery(PatternTable.SELECT_INDEX);
+				while (rs.next()) {
+					final String name = rs.getString(PatternTable.NAME_COLUMN);
+					final int segmentCount = rs
+							.getInt(PatternTable.SEGMENT_COUNT_COLUMN);
+					final long totalDuration = rs
+							.getLong(PatternTable.TOTAL_DURATION_COLUMN);
+					index.put(name, PatternMaker.makeLazy(name, segmentCount,
+							totalDuration, this));
+				}
+				rs.close();
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+		return index;
+	}
+
+	@Override
+	public void loadPatternIndex(
+			Callback<Map<String, IVibrationPattern>> callback) {
+		callback.onResult(getPatternIndex());
+	}
+
+	@Override
+	public IVibrationPattern loadPattern(String name) {
+		try {
+			final PreparedStatement statement = connection
+					.prepareStatement(PatternTable.SELECT_BY_NAME);
+			try {
+				statement.setString(1, name);
+				final ResultSet rs = statement.executeQuery();
+				IVibrationPattern pattern = null;
+				if (rs.next()) {
+					final Timeline timeline = decode(rs
+							.getBytes(PatternTable.TIMELINE_COLUMN), rs
+							.getLong(PatternTable.CHECKSUM_COLUMN));
+					if (timeline != null) {
+						pattern = PatternMaker.make(name, timeline);
+					}
+				}
+				rs.close();
+				return pattern;
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void loadPattern(String name, Callback<IVibrationPattern> callback) {
+		callback.onResult(loadPattern(name));
+	}
+
+	@Override
+	public void closeDB() {
+		try {
+			if (insertRow != null) {
+				insertRow.close();
+				deleteByName.close();
+				insertRow = null;
+				deleteByName = null;
+			}
+			if (connection != null) {
+				connection.close();
+				connection = null;
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return decoded timeline or null if the stored data is corrupt
+	 */
+	private static Timeline decode(byte[] data, long checksum) {
+		if (data == null || TimelineCodec.checksum(data) != checksum) {
+			return null;
+		}
+		try {
+			return TimelineCodec.decode(data);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package m3r7.android.vibrator.voice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import m3r7.android.vibrator.IRecognizer;
+
+/**
+ * Drives {@link VoiceControl} with a fake {@link IRecognizer} on the JVM :
+ * restarting after every utterance and recoverable error, ignoring the rest
+ * of an utterance once a partial result triggered a command, and staying
+ * quiet once stopped. From the project root :
+ * 
+ * <pre>
+ * javac -encoding UTF-8 -d bin/check \
+ *     src/m3r7/android/vibrator/IRecognizer.java \
+ *     src/m3r7/android/vibrator/voice/VoiceControl.java \
+ *     bench/src/m3r7/android/vibrator/voice/VoiceControlCheck.java
+ * java -cp bin/check m3r7.android.vibrator.voice.VoiceControlCheck
+ * </pre>
+ * 
+ * Throws an AssertionError at the first failed check.
+ */
+public final class VoiceControlCheck {
+
+	private static final List<String> START = Collections
+			.singletonList("begin");
+	private static final List<String> NOTHING = Collections.emptyList();
+
+	private VoiceControlCheck() {
+	}
+
+	public static void main(String[] args) {
+		checkRestartsAfterUtterance();
+		checkPartialDebounce();
+		checkRecoverableErrors();
+		checkFatalError();
+		checkStop();
+		checkStoppedByCommand();
+		checkRelease();
+		System.out.println("VoiceControl : all checks passed");
+	}
+
+	private static void checkRestartsAfterUtterance() {
+		final FakeRecognizer recognizer = new FakeRecognizer();
+		final RecordingCallback callback = new RecordingCallback();
+		final VoiceControl control = new VoiceControl(recognizer, callback);
+		check(recognizer.starts == 0, "listens before start()");
+		control.start();
+		control.start();
+		check(recognizer.starts == 1, "start() twice listens twice");
+		final float[] confidences = { 0.9f };
+		recognizer.listener.onResults(START, confidences);
+		check(callback.dispatched.equals(Arrays.asList("final:[begin]")),
+				"final result not dispatched : " + callback.dispatched);
+		check(callback.confidences == confidences,
+				"confidences not passed on");
+		check(recognizer.starts == 2, "no new utterance after results");
+		recognizer.listener.onResults(NOTHING, null);
+		check(callback.dispatched.size() == 1, "empty result dispatched");
+		check(recognizer.starts == 3, "no new utterance after empty result");
+	}
+
+	private static void checkPartialDebounce() {
+		final FakeRecognizer recognizer = new FakeRecognizer();
+		final RecordingCallback callback = new RecordingCallback();
+		final VoiceControl control = new VoiceControl(recognizer, callback);
+		control.start();
+		// nothing matched yet, partial results keep coming
+		callback.handlePartial = false;
+		recognizer.listener.onPartialResults(Collections.singletonList("be"));
+		recognizer.listener.onPartialResults(NOTHING);
+		callback.handlePartial = true;
+		recognizer.listener.onPartialResults(START);
+		recognizer.listener.onPartialResults(Arrays.asList("begin now"));
+		recognizer.listener.onResults(Arrays.asList("begin now"),
+				new float[] { 0.8f });
+		check(callback.dispatched.equals(Arrays.asList("partial:[be]",
+				"partial:[begin]")),
+				"utterance not ignored after a handled partial result : "
+						+ callback.dispatched);
+		// the next utterance is dispatched again
+		recognizer.listener.onPartialResults(START);
+		check(callback.dispatched.size() == 3,
+				"partial result of the next utterance ignored");
+		recognizer.listener.onError(true);
+		recognizer.listener.onPartialResults(START);
+		check(callback.dispatched.size() == 4,
+				"partial result after an error restart ignored");
+	}
+
+	private static void checkRecoverableErrors() {
+		final FakeRecognizer recognizer = new FakeRecognizer();
+		final RecordingCallback callback = new RecordingCallback();
+		final VoiceControl control = new VoiceControl(recognizer, callback);
+		control.start();
+		for (int i = 0; i < 5; i++) {
+			recognizer.listener.onError(true);
+		}
+		check(recognizer.starts == 6,
+				"not restarted after every recoverable error");
+		check(control.isActive(), "stopped by a recoverable error");
+		check(callback.stops == 0, "onStopped() for a recoverable error");
+	}
+
+	private static void checkFatalError() {
+		final FakeRecognizer recognizer = new FakeRecognizer();
+		final RecordingCallback callback = new RecordingCallback();
+		final VoiceControl control = new VoiceControl(recognizer, callback);
+		control.start();
+		recognizer.listener.onError(false);
+		check(!control.isActive(), "still active after a fatal error");
+		check(callback.stops == 1, "onStopped() not called once");
+		check(recognizer.starts == 1, "restarted after a fatal error");
+		recognizer.listener.onError(false);
+		recognizer.listener.onResults(START, null);
+		check(callback.stops == 1 && callback.dispatched.isEmpty()
+				&& recognizer.starts == 1, "late callbacks not ignored");
+		control.start();
+		check(control.isActive() && recognizer.starts == 2,
+				"cannot start again after a fatal error");
+	}
+
+	private static void checkStop() {
+		final FakeRecognizer recognizer = new FakeRecognizer();
+		final RecordingCallback callback = new RecordingCallback();
+		final VoiceControl control = new VoiceControl(recognizer, callback);
+		control.stop();
+		check(recognizer.cancels == 0, "stop() cancels an idle recognizer");
+		control.start();
+		control.stop();
+		check(recognizer.cancels == 1, "stop() does not cancel");
+		recognizer.listener.onPartialResults(START);
+		recognizer.listener.onResults(START, null);
+		recognizer.listener.onError(true);
+		check(callback.dispatched.isEmpty(), "dispatched after stop()");
+		check(recognizer.starts == 1, "restarted after stop()");
+		check(callback.stops == 0, "onStopped() after stop()");
+	}
+
+	private static void checkStoppedByCommand() {
+		final FakeRecognizer recognizer = new FakeRecognizer();
+		final RecordingCallback callback = new RecordingCallback();
+		final VoiceControl control = new VoiceControl(recognizer, callback);
+		callback.control = control;
+		control.start();
+		recognizer.listener.onResults(START, null);
+		check(!control.isActive(), "command did not stop voice control");
+		check(recognizer.starts == 1,
+				"restarted after a command stopped voice control");
+	}
+
+	private static void checkRelease() {
+		final FakeRecognizer recognizer = new FakeRecognizer();
+		final VoiceControl control = new VoiceControl(recognizer,
+				new RecordingCallback());
+		control.start();
+		control.release();
+		check(recognizer.cancels == 1 && recognizer.destroys == 1,
+				"release() does not cancel and destroy");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	private static class FakeRecognizer implements IRecognizer {
+		IRecognizer.Listener listener;
+		int starts;
+		int cancels;
+		int destroys;
+
+		@Override
+		public void setListener(Listener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void startListening() {
+			starts++;
+		}
+
+		@Override
+		public void cancel() {
+			cancels++;
+		}
+
+		@Override
+		public void destroy() {
+			destroys++;
+		}
+	}
+
+	private static class RecordingCallback implements VoiceControl.Callback {
+		final List<String> dispatched = new ArrayList<String>();
+		float[] confidences;
+		boolean handlePartial = true;
+		int stops;
+		// stopped by the first final result if set
+		VoiceControl control;
+
+		@Override
+		public boolean dispatch(List<String> hypotheses, float[] confidences,
+				boolean partial) {
+			dispatched.add((partial ? "partial:" : "final:") + hypotheses);
+			if (partial) {
+				return handlePartial;
+			}
+			this.confidences = confidences;
+			if (control != null) {
+				control.stop();
+			}
+			return true;
+		}
+
+		@Override
+		public void onStopped() {
+			stops++;
+		}
+	}
+
+}
@@ -50,7 +50,8 @@ public final class R {
     }
     public static final class integer {
         public static final int max_pattern_name_length=0x7f060000;
-        public static final int wait_time_after_scaling=0x7f060001;
+        public static final int scaling_batch_window=0x7f060003;
+        public static final int voice_match_threshold_percent=0x7f060002;
     }
     public static final class layout {
         public static final int commandslist=0x7f030000;
@@ -16,6 +16,7 @@
 
 package m3r7.android.vibrator;
 
+import java.util.Collection;
 import java.util.Map;
 
 public interface IPersister {
@@ -24,7 +25,50 @@ public interface IPersister {
 
 	void deletePatterns();
 
+	void upsertPattern(IVibrationPattern pattern);
+
+	void deletePattern(String name);
+
+	/**
+	 * Replaces the stored timelines of the upserted patterns and removes the
+	 * deleted ones within a single transaction.
+	 */
+	void updatePatterns(Collection<IVibrationPattern> upserted,
+			Collection<String> deleted);
+
 	Map<String, IVibrationPattern> getPatternsMap();
 
+	/**
+	 * Reads only the name, segment count and total duration of each stored
+	 * pattern. Timelines of the returned patterns are loaded through
+	 * {@link #loadPattern(String)} the first time they are needed.
+	 */
+	Map<String, IVibrationPattern> getPatternIndex();
+
+	/**
+	 * @return the stored pattern with the given name or null if there is none
+	 */
+	IVibrationPattern loadPattern(String name);
+
+	/**
+	 * Asynchronous variant of {@link #loadPattern(String)}. The callback is
+	 * invoked on the main thread, with null if there is no such pattern.
+	 */
+	void loadPattern(String name, Callback<IVibrationPattern> callback);
+
+	/**
+	 * Asynchronous variant of {@link #getPatternIndex()}. The callback is
+	 * invoked on the main thread.
+	 */
+	void loadPatternIndex(Callback<Map<String, IVibrationPattern>> callback);
+
+	/**
+	 * Releases this persister. The database is closed once every component
+	 * that obtained a persister has released it.
+	 */
 	void closeDB();
+
+	interface Callback<T> {
+		void onResult(T result);
+	}
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator;
+
+import java.util.List;
+
+/**
+ * Speech recognizer that runs inside the application, one utterance per
+ * {@link #startListening()} call.
+ */
+public interface IRecognizer {
+
+	void setListener(Listener listener);
+
+	/**
+	 * Listens for a single utterance and reports it to the listener.
+	 */
+	void startListening();
+
+	/**
+	 * Stops listening without reporting results.
+	 */
+	void cancel();
+
+	/**
+	 * Releases the recognizer, no calls may be made afterwards.
+	 */
+	void destroy();
+
+	interface Listener {
+
+		/**
+		 * Hypotheses for the part of the utterance heard so far.
+		 */
+		void onPartialResults(List<String> hypotheses);
+
+		/**
+		 * @param confidences
+		 *            confidence per hypothesis, may be null
+		 */
+		void onResults(List<String> hypotheses, float[] confidences);
+
+		/**
+		 * @param recoverable
+		 *            true if nothing was understood and listening may simply
+		 *            start again
+		 */
+		void onError(boolean recoverable);
+	}
+
+}
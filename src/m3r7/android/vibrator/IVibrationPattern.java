@@ -16,20 +16,64 @@
 
 package m3r7.android.vibrator;
 
-import java.util.List;
-
-import android.util.Pair;
+import m3r7.android.vibrator.pattern.Timeline;
 
 public interface IVibrationPattern {
 
 	String getName();
 
-	List<Pair<Integer, Integer>> getPattern();
+	Timeline getTimeline();
+
+	int getSegmentCount();
+
+	/**
+	 * @return sum of all vibration and silence durations in milliseconds
+	 */
+	long getTotalDuration();
 
 	IVibrationPattern scale(int modifier);
 
-	Pair<Boolean, Boolean> isScalable(int modifier);
+	/**
+	 * @return the timeline played factor times as long, see
+	 *         {@link m3r7.android.vibrator.pattern.TempoTable#getVariant(double)}
+	 */
+	Timeline getTempoVariant(double factor);
+
+	Scalability isScalable(int modifier);
 
 	long[] getVibratable(long waitTime);
 
+	/**
+	 * Writes what {@link #getVibratable(long)} returns into buffer.
+	 * 
+	 * @return number of elements written
+	 * @throws IllegalArgumentException
+	 *             if buffer is too small
+	 */
+	int getVibratable(long waitTime, long[] buffer);
+
+	enum Scalability {
+		NONE(false, false), DECREASE(true, false), INCREASE(false, true), BOTH(
+				true, true);
+		/**
+		 * allowsDecrease tells whether modifier - 1 (i.e. faster) is legal,
+		 * allowsIncrease whether modifier + 1 (i.e. slower) is legal
+		 */
+		public final boolean allowsDecrease;
+		public final boolean allowsIncrease;
+
+		private Scalability(boolean allowsDecrease, boolean allowsIncrease) {
+			this.allowsDecrease = allowsDecrease;
+			this.allowsIncrease = allowsIncrease;
+		}
+
+		public static Scalability of(boolean allowsDecrease,
+				boolean allowsIncrease) {
+			if (allowsDecrease) {
+				return allowsIncrease ? BOTH : DECREASE;
+			}
+			return allowsIncrease ? INCREASE : NONE;
+		}
+	}
+
 }
@@ -16,13 +16,15 @@
 
 package m3r7.android.vibrator;
 
-import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import m3r7.android.vibrator.pattern.CaptureRecorder;
+import m3r7.android.vibrator.pattern.PatternCompactor;
 import m3r7.android.vibrator.pattern.PatternMaker;
+import m3r7.android.vibrator.pattern.Timeline;
 import m3r7.android.vibrator.persistance.PersisterMaker;
 import m3r7.android.vibrator.util.PatternMap;
 import m3r7.android.vibrator.util.VibratorConstants;
@@ -63,10 +65,8 @@ public class PatternManagerActivity extends Activity {
 	private String selectedPattern;
 	private int selectedDuration;
 	private PatternMap patterns;
-	private boolean isModified;
 	private boolean isCapturing;
-	private List<Integer> patternList;
-	private long previousEventTime;
+	private final CaptureRecorder recorder = new CaptureRecorder();
 	private boolean isCaptureAborted;
 	private String captureAbortedPatternName;
 
@@ -87,21 +87,21 @@ public class PatternManagerActivity extends Activity {
 		mPatternSpinner = (Spinner) findViewById(R.id.spinnerPatternsForDeletion);
 		mButtonDelete = (Button) findViewById(R.id.buttonDeletePattern);
 		mPatternPersister = PersisterMaker.make(this);
-		patterns = new PatternMap(mPatternPersister.getPatternsMap()) {
-			@Override
-			protected void onCreated(Map<String, IVibrationPattern> patterns) {
-				isModified = false;
-				setDeletionEnabled(!patterns.isEmpty());
-				setSpinnerAdapter(patterns.keySet());
-			}
-
-			@Override
-			protected void onModified() {
-				isModified = true;
-				setDeletionEnabled(!patterns.isEmpty());
-				setSpinnerAdapter(patterns.keySet());
-			}
-		};
+		patterns = new ManagerPatternMap(
+				new HashMap<String, IVibrationPattern>());
+		// names must be known before a new pattern can be validated
+		mButtonCapture.setEnabled(false);
+		mPatternPersister
+				.loadPatternIndex(new IPersister.Callback<Map<String, IVibrationPattern>>() {
+					@Override
+					public void onResult(Map<String, IVibrationPattern> index) {
+						if (mPatternPersister == null) {// destroyed meanwhile
+							return;
+						}
+						patterns = new ManagerPatternMap(index);
+						mButtonCapture.setEnabled(true);
+					}
+				});
 		mVibrator = (Vibrator) getSystemService(Context.VIBRATOR_SERVICE);
 		setDurationSpinnerAdapter();
 		setDurationSpinnerListener();
@@ -128,9 +128,10 @@ public class PatternManagerActivity extends Activity {
 			isCaptureAborted = true;
 			captureAbortedPatternName = getPatternName();
 		}
-		if (isModified) {
-			mPatternPersister.deletePatterns();
-			mPatternPersister.savePatterns(patterns.getWrappedObject());
+		if (patterns.hasChanges()) {
+			mPatternPersister.updatePatterns(patterns.getDirtyPatterns(),
+					patterns.getRemovedNames());
+			patterns.clearChanges();
 		}
 		super.onPause();
 	}
@@ -139,6 +140,10 @@ public class PatternManagerActivity extends Activity {
 	protected void onDestroy() {
 		cancelTimer();
 		releaseVibrator();
+		if (mPatternPersister != null) {
+			mPatternPersister.closeDB();
+			mPatternPersister = null;
+		}
 		super.onDestroy();
 	}
 
@@ -151,9 +156,7 @@ public class PatternManagerActivity extends Activity {
 				final long eventTime = event.getEventTime();
 				switch (eventType) {
 				case MotionEvent.ACTION_DOWN:
-					if (isCapturing) {
-						patternList.add((int) (eventTime - previousEventTime));
-					} else {// start capturing...
+					if (!isCapturing) {// start capturing...
 						final String patternName = getPatternName();
 						if (!VibratorUtility.hasText(patternName)) {
 							showDialog(DIALOG_ID.ERROR_MISSING_NAME);
@@ -180,13 +183,12 @@ public class PatternManagerActivity extends Activity {
 						mTextPatternName.setText(patternName);
 						toggleCapturingState();
 					}
+					recorder.press(eventTime);
 					mVibrator.vibrate(VibratorConstants.INDEFINITELY, 0);
-					previousEventTime = eventTime;
 					return true;
 				case MotionEvent.ACTION_UP:
 					if (isCapturing) {
-						patternList.add((int) (eventTime - previousEventTime));
-						previousEventTime = eventTime;
+						recorder.release(eventTime);
 						mVibrator.cancel();
 					}
 					return true;
@@ -281,13 +283,13 @@ public class PatternManagerActivity extends Activity {
 		isCapturing = !isCapturing;
 		if (isCapturing) {
 			mButtonCapture.setText(R.string.button_capture_capturing);
-			patternList = new ArrayList<Integer>();
+			recorder.clear();
 			cancelTimer();
 			mTimer = new CaptureTimer();
 			mTimer.start();
 		} else {
 			mButtonCapture.setText(R.string.button_capture_not_capturing);
-			patternList = null;
+			recorder.clear();
 			cancelTimer();
 		}
 		setEnabledForCapture(isCapturing);
@@ -455,6 +457,25 @@ public class PatternManagerActivity extends Activity {
 				.toUpperCase();
 	}
 
+	private class ManagerPatternMap extends PatternMap {
+
+		protected ManagerPatternMap(Map<String, IVibrationPattern> patterns) {
+			super(patterns);
+		}
+
+		@Override
+		protected void onCreated(Map<String, IVibrationPattern> patterns) {
+			setDeletionEnabled(!patterns.isEmpty());
+			setSpinnerAdapter(patterns.keySet());
+		}
+
+		@Override
+		protected void onModified() {
+			setDeletionEnabled(!patterns.isEmpty());
+			setSpinnerAdapter(patterns.keySet());
+		}
+	}
+
 	private class CaptureTimer extends CountDownTimer {
 
 		public CaptureTimer() {
@@ -464,32 +485,10 @@ public class PatternManagerActivity extends Activity {
 		@Override
 		public void onFinish() {
 			mVibrator.cancel();
-			final long timeSinceLastEvent = selectedDuration
-					- VibratorUtility.getSumOfElements(patternList);
-			/*
-			 * patternList.size() being even means button was pressed down when
-			 * countdown finished
-			 */
-			if (patternList.size() % 2 == 0) {
-				if (timeSinceLastEvent > 0) {
-					/*
-					 * add vibration duration since last ACTION_DOWN event
-					 */
-					patternList.add((int) timeSinceLastEvent);
-					patternList.add(0);
-				}
-			} else {
-				if (timeSinceLastEvent > 0) {
-					/*
-					 * add silent duration since last ACTION_UP event
-					 */
-					patternList.add((int) timeSinceLastEvent);
-				} else {
-					patternList.add(0);
-				}
-			}
+			final Timeline timeline = PatternCompactor.compactCapture(recorder
+					.finish(recorder.getStartTime() + selectedDuration));
 			final IVibrationPattern pattern = PatternMaker.make(
-					getPatternName(), VibratorUtility.toPairList(patternList));
+					getPatternName(), timeline);
 			patterns.put(pattern.getName(), pattern);
 			PatternManagerActivity.this.showDialog(DIALOG_ID.CAPTURE_SUCCESS);
 			toggleCapturingState();
@@ -18,26 +18,37 @@ package m3r7.android.vibrator;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import m3r7.android.vibrator.IVibrationPattern.Scalability;
+import m3r7.android.vibrator.command.CommandExecutor;
 import m3r7.android.vibrator.command.CommandMaker;
+import m3r7.android.vibrator.command.CommandRegistry;
+import m3r7.android.vibrator.command.CommandVocabulary;
+import m3r7.android.vibrator.pattern.PatternMaker;
 import m3r7.android.vibrator.persistance.PersisterMaker;
+import m3r7.android.vibrator.playback.PlaybackEngine;
+import m3r7.android.vibrator.playback.PlaybackMaker;
+import m3r7.android.vibrator.util.AndroidResources;
+import m3r7.android.vibrator.util.HandlerScheduler;
 import m3r7.android.vibrator.util.PatternMap;
+import m3r7.android.vibrator.util.VibratorConstants;
 import m3r7.android.vibrator.util.VibratorConstants.MENU_ID;
 import m3r7.android.vibrator.util.VibratorConstants.PREFERENCES;
 import m3r7.android.vibrator.util.VibratorConstants.REQUEST_CODE;
+import m3r7.android.vibrator.voice.RecognizerMaker;
+import m3r7.android.vibrator.voice.VoiceControl;
 import android.app.Activity;
-import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.CountDownTimer;
 import android.os.PowerManager;
-import android.os.Vibrator;
 import android.os.PowerManager.WakeLock;
 import android.speech.RecognizerIntent;
-import android.util.Pair;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
@@ -52,13 +63,15 @@ import android.widget.ImageView;
 import android.widget.Spinner;
 import android.widget.ToggleButton;
 
-public class VibratorActivity extends Activity {
+public class VibratorActivity extends Activity implements ICommandTarget {
 
-	private Vibrator mVibrator;
+	private PlaybackEngine mPlayback;
 	private WakeLock mWakeLock;
 	private IPersister mPatternPersister;
 	private Animation mAnimVibration;
 	private RecognitionLifetimeCountdown mRecogTimer;
+	// null if speech can only be recognized by a separate activity
+	private VoiceControl mVoiceControl;
 
 	private Spinner mPatternSpinner;
 	private Button mButtonFaster;
@@ -71,7 +84,14 @@ public class VibratorActivity extends Activity {
 
 	private String selectedPattern;
 	private PatternMap patterns;
+	private String[] commandNames;
+	private CommandVocabulary vocabulary;
+	private CommandRegistry commands;
+	private CommandExecutor commandExecutor;
+	private float matchThreshold;
 	private int modifier;
+	// whether the timeline of selectedPattern can be used without disk reads
+	private boolean selectionLoaded;
 	private boolean isSpeechRecognitionAvailable;
 	private boolean voiceDialogUp;
 
@@ -90,9 +110,18 @@ public class VibratorActivity extends Activity {
 		mButtonManage = (Button) findViewById(R.id.buttonManagePatterns);
 		mButtonListCommands = (Button) findViewById(R.id.buttonCommandsList);
 		mPatternPersister = PersisterMaker.make(this);
-		patterns = new VibratorMainPatternMap(mPatternPersister
-				.getPatternsMap());
-		mVibrator = (Vibrator) getSystemService(Context.VIBRATOR_SERVICE);
+		final IResources resources = new AndroidResources(this);
+		commandNames = resources.getStringArray(R.array.command_names);
+		commands = new CommandRegistry(this);
+		commandExecutor = new CommandExecutor(this, resources
+				.getInteger(R.integer.scaling_batch_window),
+				new HandlerScheduler());
+		matchThreshold = resources
+				.getInteger(R.integer.voice_match_threshold_percent) / 100f;
+		// controls stay disabled until the pattern index is loaded
+		patterns = new VibratorMainPatternMap(
+				new HashMap<String, IVibrationPattern>());
+		mPlayback = PlaybackMaker.make(this);
 		mAnimVibration = AnimationUtils.loadAnimation(this, R.anim.vibration);
 		setVoiceCommandButtonListener();
 		setSpinnerListener();
@@ -102,16 +131,19 @@ public class VibratorActivity extends Activity {
 		setFastButtonListener();
 		setSlowButtonListener();
 
-		isSpeechRecognitionAvailable = isSpeechRecognitionAvailable();
+		final IRecognizer recognizer = RecognizerMaker.make(this);
+		if (recognizer != null) {
+			mVoiceControl = new VoiceControl(recognizer, new VoiceCallback());
+		}
+		isSpeechRecognitionAvailable = mVoiceControl != null
+				|| isSpeechRecognitionAvailable();
 
 		// read preferences
 		SharedPreferences settings = getSharedPreferences(
 				PREFERENCES.FILE_NAME, 0);
 		final String lastUsed = settings.getString(PREFERENCES.KEY_LAST_USED,
 				null);
-		if (lastUsed != null && patterns.containsKey(lastUsed)) {
-			mPatternSpinner.setSelection(getPosition(lastUsed));
-		}
+		loadPatterns(lastUsed);
 	}
 
 	@Override
@@ -132,6 +164,8 @@ public class VibratorActivity extends Activity {
 			mButtonVoiceCommands.setChecked(false);
 			resetToggleRelated();
 			cancelTimer();
+			stopVoiceControl();
+			commandExecutor.cancel();
 		}
 		releaseWakeLock();
 		super.onPause();
@@ -140,6 +174,11 @@ public class VibratorActivity extends Activity {
 	@Override
 	protected void onDestroy() {
 		cancelTimer();
+		commandExecutor.cancel();
+		if (mVoiceControl != null) {
+			mVoiceControl.release();
+			mVoiceControl = null;
+		}
 		releaseVibrator();
 		if (mPatternPersister != null) {
 			mPatternPersister.closeDB();
@@ -156,7 +195,10 @@ public class VibratorActivity extends Activity {
 	@Override
 	public boolean dispatchTouchEvent(MotionEvent ev) {
 		if (mButtonVoiceCommands.isChecked()) {
-			if (!voiceDialogUp) {
+			if (mVoiceControl != null) {
+				// listening already, start again if an error stopped it
+				mVoiceControl.start();
+			} else if (!voiceDialogUp) {
 				cancelTimer();
 				mRecogTimer = new RecognitionLifetimeCountdown();
 				launchSpeechRecognitionActivity();
@@ -209,9 +251,15 @@ public class VibratorActivity extends Activity {
 	}
 
 	private void releaseVibrator() {
-		if (mVibrator != null) {
-			mVibrator.cancel();
-			mVibrator = null;
+		if (mPlayback != null) {
+			mPlayback.release();
+			mPlayback = null;
+		}
+	}
+
+	private void stopVoiceControl() {
+		if (mVoiceControl != null) {
+			mVoiceControl.stop();
 		}
 	}
 
@@ -250,11 +298,7 @@ public class VibratorActivity extends Activity {
 						selectedPattern = (String) parent
 								.getItemAtPosition(position);
 						if (!selectedPattern.equals(previousSelection)) {
-							if (mButtonOnOff.isChecked()) {
-								resetToggleRelated();
-								setScalerButtonsEnabled();
-								vibrate(0L);
-							}
+							loadSelectedPattern();
 						}
 					}
 
@@ -303,11 +347,7 @@ public class VibratorActivity extends Activity {
 
 			@Override
 			public void onClick(View v) {
-				mVibrator.cancel();
-				modifier++;
-				setScalerButtonsEnabled();
-				vibrate(getResources().getInteger(
-						R.integer.wait_time_after_scaling));
+				commandExecutor.submit(commands.get(ICommand.Type.DEC_FREQ));
 			}
 		});
 	}
@@ -317,11 +357,7 @@ public class VibratorActivity extends Activity {
 
 			@Override
 			public void onClick(View v) {
-				mVibrator.cancel();
-				modifier--;
-				setScalerButtonsEnabled();
-				vibrate(getResources().getInteger(
-						R.integer.wait_time_after_scaling));
+				commandExecutor.submit(commands.get(ICommand.Type.INC_FREQ));
 			}
 		});
 	}
@@ -335,6 +371,9 @@ public class VibratorActivity extends Activity {
 					final Animation fadeOut = AnimationUtils.loadAnimation(
 							VibratorActivity.this, R.anim.fade_out);
 					animateManualControls(fadeOut);
+					if (mVoiceControl != null) {
+						mVoiceControl.start();
+					}
 				}
 			}
 		});
@@ -348,16 +387,21 @@ public class VibratorActivity extends Activity {
 	}
 
 	private void resetToggleRelated() {
-		mVibrator.cancel();
+		mPlayback.stop();
 		mImageViewIcon.clearAnimation();
 		mButtonSlower.setEnabled(false);
 		mButtonFaster.setEnabled(false);
+		if (!selectionLoaded) {
+			mButtonOnOff.setEnabled(false);
+		}
 		modifier = 0;
 	}
 
 	private void setVibratorEnabled(boolean enabled) {
 		mPatternSpinner.setEnabled(enabled);
-		mButtonOnOff.setEnabled(enabled);
+		// a running vibrator can always be stopped
+		mButtonOnOff.setEnabled(enabled
+				&& (selectionLoaded || mButtonOnOff.isChecked()));
 		if (isSpeechRecognitionAvailable) {
 			mButtonVoiceCommands.setEnabled(enabled);
 		}
@@ -392,38 +436,127 @@ public class VibratorActivity extends Activity {
 	@Override
 	protected void onActivityResult(int requestCode, int resultCode, Intent data) {
 		if (requestCode == REQUEST_CODE.MANAGE) {
-			patterns = new VibratorMainPatternMap(mPatternPersister
-					.getPatternsMap());
+			loadPatterns(null);
 		} else if (requestCode == REQUEST_CODE.VOICE_RECOGNITION) {
 			mButtonVoiceCommands.setChecked(true);
 			if (resultCode == RESULT_OK) {
 				voiceDialogUp = false;
 				final ArrayList<String> matches = data
 						.getStringArrayListExtra(RecognizerIntent.EXTRA_RESULTS);
-				final String[] commands = getResources().getStringArray(
-						R.array.command_names);
-				CommandMaker.make(matches, commands, patterns.keySet(), this)
-						.execute();
+				final float[] confidences = data
+						.getFloatArrayExtra(VibratorConstants.EXTRA_CONFIDENCE_SCORES);
+				commandExecutor.submit(CommandMaker.make(matches,
+						confidences, vocabulary, matchThreshold, commands));
 			}
 		}
 		super.onActivityResult(requestCode, resultCode, data);
 	}
 
+	/**
+	 * Reads the pattern index in the background and swaps it in once loaded.
+	 * 
+	 * @param selection
+	 *            pattern to select after loading, may be null
+	 */
+	private void loadPatterns(final String selection) {
+		mPatternPersister
+				.loadPatternIndex(new IPersister.Callback<Map<String, IVibrationPattern>>() {
+					@Override
+					public void onResult(Map<String, IVibrationPattern> index) {
+						if (mPatternPersister == null) {// destroyed meanwhile
+							return;
+						}
+						patterns = new VibratorMainPatternMap(index);
+						if (selection != null
+								&& patterns.containsKey(selection)) {
+							mPatternSpinner
+									.setSelection(getPosition(selection));
+						}
+						loadSelectedPattern();
+					}
+				});
+	}
+
+	/**
+	 * Reads the timeline of the selected pattern in the background. Starting
+	 * and scaling stay disabled until it is read, then a running vibrator
+	 * switches over to the pattern. A pattern that cannot be read is dropped
+	 * from the list.
+	 */
+	private void loadSelectedPattern() {
+		final IVibrationPattern pattern = selectedPattern == null ? null
+				: patterns.get(selectedPattern);
+		selectionLoaded = false;
+		mButtonFaster.setEnabled(false);
+		mButtonSlower.setEnabled(false);
+		if (!mButtonOnOff.isChecked()) {
+			mButtonOnOff.setEnabled(false);
+		}
+		if (pattern == null) {
+			return;
+		}
+		PatternMaker.prefetch(pattern,
+				new IPersister.Callback<IVibrationPattern>() {
+					@Override
+					public void onResult(IVibrationPattern result) {
+						if (mPatternPersister == null
+								|| patterns.get(selectedPattern) != pattern) {
+							return;// destroyed or selection changed meanwhile
+						}
+						if (result == null) {// deleted or unreadable
+							final String unreadable = selectedPattern;
+							selectedPattern = null;
+							patterns.discard(unreadable);
+							return;
+						}
+						selectionLoaded = true;
+						setVibratorEnabled(!patterns.isEmpty());
+						if (mButtonOnOff.isChecked()) {
+							switchPattern();
+						}
+					}
+				});
+	}
+
 	private void vibrate(long waitTime) {
 		if (selectedPattern != null) {
-			final long[] patternArr = patterns.get(selectedPattern).scale(
-					modifier).getVibratable(waitTime);
-			mVibrator.vibrate(patternArr, 0);
+			mPlayback.play(patterns.getScaled(selectedPattern, modifier)
+					.getTimeline(), waitTime);
 			mImageViewIcon.startAnimation(mAnimVibration);
 		}
 	}
 
+	/**
+	 * Hands playback over to the selected pattern once the segment being
+	 * played is done, keeping as much of the modifier as the pattern allows.
+	 */
+	private void switchPattern() {
+		modifier = clampModifier(patterns.get(selectedPattern), modifier);
+		setScalerButtonsEnabled();
+		mPlayback.switchTo(patterns.getScaled(selectedPattern, modifier)
+				.getTimeline());
+	}
+
+	/**
+	 * @return the modifier closest to wanted that pattern can be scaled by
+	 */
+	private static int clampModifier(IVibrationPattern pattern, int wanted) {
+		int clamped = 0;
+		while (clamped > wanted && pattern.isScalable(clamped).allowsDecrease) {
+			clamped--;
+		}
+		while (clamped < wanted && pattern.isScalable(clamped).allowsIncrease) {
+			clamped++;
+		}
+		return clamped;
+	}
+
 	private void setScalerButtonsEnabled() {
 		if (selectedPattern != null) {
-			final Pair<Boolean, Boolean> isScalable = patterns.get(
-					selectedPattern).isScalable(modifier);
-			mButtonFaster.setEnabled(isScalable.first);
-			mButtonSlower.setEnabled(isScalable.second);
+			final Scalability isScalable = patterns.get(selectedPattern)
+					.isScalable(modifier);
+			mButtonFaster.setEnabled(isScalable.allowsDecrease);
+			mButtonSlower.setEnabled(isScalable.allowsIncrease);
 		} else {
 			mButtonFaster.setEnabled(false);
 			mButtonSlower.setEnabled(false);
@@ -436,38 +569,64 @@ public class VibratorActivity extends Activity {
 				.isEmpty();
 	}
 
+	@Override
 	public void actionStartVibrator() {
 		if (mButtonOnOff.isEnabled() && !mButtonOnOff.isChecked()) {
 			mButtonOnOff.performClick();
 		}
 	}
 
+	@Override
 	public void actionStopVibrator() {
 		if (mButtonOnOff.isEnabled() && mButtonOnOff.isChecked()) {
 			mButtonOnOff.performClick();
 		}
 	}
 
+	@Override
 	public void actionIncreaseFreq() {
-		if (mButtonFaster.isEnabled()) {
-			mButtonFaster.performClick();
-		}
+		actionScale(-1);
 	}
 
+	@Override
 	public void actionDecreaseFreq() {
-		if (mButtonSlower.isEnabled()) {
-			mButtonSlower.performClick();
+		actionScale(1);
+	}
+
+	/**
+	 * Changes the modifier by up to steps in one go, the scaled pattern takes
+	 * over at the end of the segment being played. Steps the pattern cannot
+	 * be scaled by are ignored.
+	 * 
+	 * @param steps
+	 *            negative for faster, positive for slower
+	 */
+	@Override
+	public void actionScale(int steps) {
+		if (!mButtonOnOff.isChecked() || !selectionLoaded) {
+			return;
+		}
+		final int target = clampModifier(patterns.get(selectedPattern),
+				modifier + steps);
+		if (target != modifier) {
+			modifier = target;
+			setScalerButtonsEnabled();
+			mPlayback.switchTo(patterns.getScaled(selectedPattern, modifier)
+					.getTimeline());
 		}
 	}
 
+	@Override
 	public void actionSelectPattern(String patternName) {
 		if (mPatternSpinner.isEnabled()) {
 			mPatternSpinner.setSelection(getPosition(patternName));
 		}
 	}
 
+	@Override
 	public void actionDisableVoice() {
 		cancelTimer();
+		stopVoiceControl();
 		closeSpeechRecognitionActivity();
 		mButtonVoiceCommands.setChecked(false);
 		final Animation fadeIn = AnimationUtils.loadAnimation(
@@ -490,12 +649,41 @@ public class VibratorActivity extends Activity {
 		protected void onCreated(Map<String, IVibrationPattern> patterns) {
 			setVibratorEnabled(!patterns.isEmpty());
 			setSpinnerAdapter(patterns.keySet());
+			vocabulary = new CommandVocabulary(commandNames, patterns.keySet());
+			commands.retainPatterns(patterns.keySet());
 		}
 
 		@Override
 		protected void onModified() {
 			setVibratorEnabled(!patterns.isEmpty());
 			setSpinnerAdapter(patterns.keySet());
+			vocabulary = new CommandVocabulary(commandNames, patterns.keySet());
+			commands.retainPatterns(patterns.keySet());
+		}
+	}
+
+	private class VoiceCallback implements VoiceControl.Callback {
+
+		@Override
+		public boolean dispatch(List<String> hypotheses, float[] confidences,
+				boolean partial) {
+			if (partial) {
+				final ICommand command = CommandMaker.makePartial(
+						hypotheses, vocabulary, commands);
+				if (command.getType() == ICommand.Type.BASE) {
+					return false;
+				}
+				commandExecutor.submit(command);
+				return true;
+			}
+			commandExecutor.submit(CommandMaker.make(hypotheses, confidences,
+					vocabulary, matchThreshold, commands));
+			return true;
+		}
+
+		@Override
+		public void onStopped() {
+			actionDisableVoice();
 		}
 	}
 
@@ -17,27 +17,27 @@
 package m3r7.android.vibrator.command;
 
 import m3r7.android.vibrator.ICommand;
-import m3r7.android.vibrator.VibratorActivity;
+import m3r7.android.vibrator.ICommandTarget;
 
 class BaseCommand implements ICommand {
 
 	private final String name;
 	private final String description;
 	private final Type type;
-	private final VibratorActivity activity;
+	private final ICommandTarget target;
 
 	BaseCommand(String nameStr, String descriptionStr) {
 		this.name = nameStr;
 		this.description = descriptionStr;
 		this.type = Type.BASE;
-		this.activity = null;
+		this.target = null;
 	}
 
-	BaseCommand(VibratorActivity activity, Type type) {
+	BaseCommand(ICommandTarget target, Type type) {
 		this.name = null;
 		this.description = null;
 		this.type = type;
-		this.activity = activity;
+		this.target = target;
 	}
 
 	@Override
@@ -60,8 +60,8 @@ class BaseCommand implements ICommand {
 		return type;
 	}
 
-	VibratorActivity getActivity() {
-		return activity;
+	ICommandTarget getTarget() {
+		return target;
 	}
 
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import m3r7.android.vibrator.ICommand;
+import m3r7.android.vibrator.ICommandTarget;
+import m3r7.android.vibrator.ICommand.Type;
+
+/**
+ * Executes commands in order on the thread of its {@link Scheduler}. Scaling
+ * commands are held back for a short window and consecutive ones are applied
+ * as a single net modifier change, so a burst of "faster" / "slower" restarts
+ * the vibrator once instead of once per command. Any other command is
+ * executed as soon as the scheduler gets to it, after the scaling queued
+ * before it.
+ */
+public class CommandExecutor {
+
+	private final ICommandTarget target;
+	private final long batchWindow;
+	private final Scheduler scheduler;
+	private final List<ICommand> queue = new ArrayList<ICommand>();
+	private final Runnable flush = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+	private boolean flushScheduled;
+
+	/**
+	 * @param batchWindow
+	 *            milliseconds scaling commands wait for the ones following
+	 */
+	public CommandExecutor(ICommandTarget target, long batchWindow,
+			Scheduler scheduler) {
+		this.target = target;
+		this.batchWindow = batchWindow;
+		this.scheduler = scheduler;
+	}
+
+	public void submit(ICommand command) {
+		queue.add(command);
+		if (isScaling(command)) {
+			if (!flushScheduled) {
+				scheduler.schedule(flush, batchWindow);
+				flushScheduled = true;
+			}
+		} else {
+			scheduler.unschedule(flush);
+			scheduler.schedule(flush, 0);
+			flushScheduled = true;
+		}
+	}
+
+	/**
+	 * Drops all commands that have not been executed yet.
+	 */
+	public void cancel() {
+		scheduler.unschedule(flush);
+		flushScheduled = false;
+		queue.clear();
+	}
+
+	private void flush() {
+		flushScheduled = false;
+		// commands may submit new ones while executing
+		final ICommand[] commands = queue.toArray(new ICommand[queue.size()]);
+		queue.clear();
+		int steps = 0;
+		for (ICommand command : commands) {
+			if (isScaling(command)) {
+				steps += getSteps(command.getType());
+			} else {
+				if (steps != 0) {
+					target.actionScale(steps);
+					steps = 0;
+				}
+				command.execute();
+			}
+		}
+		if (steps != 0) {
+			target.actionScale(steps);
+		}
+	}
+
+	private static boolean isScaling(ICommand command) {
+		return command.getType() == Type.INC_FREQ
+				|| command.getType() == Type.DEC_FREQ;
+	}
+
+	/**
+	 * @return modifier change of a scaling command, a higher frequency means a
+	 *         shorter pattern
+	 */
+	private static int getSteps(Type type) {
+		return type == Type.INC_FREQ ? -1 : 1;
+	}
+
+	/**
+	 * Runs tasks later on the thread commands are submitted on, a Handler in
+	 * the app.
+	 */
+	public interface Scheduler {
+
+		void schedule(Runnable task, long delayMillis);
+
+		/**
+		 * Removes task if it has not run yet.
+		 */
+		void unschedule(Runnable task);
+
+	}
+
+}
@@ -16,11 +16,15 @@
 
 package m3r7.android.vibrator.command;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import m3r7.android.vibrator.ICommand;
-import m3r7.android.vibrator.VibratorActivity;
-import m3r7.android.vibrator.ICommand.Type;
+import m3r7.android.vibrator.ICommandTarget;
+import m3r7.android.vibrator.IResources;
+import m3r7.android.vibrator.R;
 
 public class CommandMaker {
 	public static ICommand make(String name, String description) {
@@ -28,32 +32,79 @@ public class CommandMaker {
 	}
 
 	public static ICommand make(Collection<String> matches, String[] commands,
-			Collection<String> patternNames, VibratorActivity activity) {
+			Collection<String> patternNames, ICommandTarget target) {
+		return make(matches, new CommandVocabulary(commands, patternNames),
+				new CommandRegistry(target));
+	}
+
+	/**
+	 * @return the commands listed in resources, with their descriptions
+	 */
+	public static List<ICommand> makeList(IResources resources) {
+		final String[] names = resources.getStringArray(R.array.command_names);
+		final String[] descriptions = resources
+				.getStringArray(R.array.command_descriptions);
+		final List<ICommand> commandList = new ArrayList<ICommand>(
+				names.length);
+		for (int i = 0; i < names.length; i++) {
+			commandList.add(make(names[i], descriptions[i]));
+		}
+		return Collections.unmodifiableList(commandList);
+	}
+
+	/**
+	 * @return command for the first hypothesis found in vocabulary or a
+	 *         command that does nothing
+	 */
+	public static ICommand make(Collection<String> matches,
+			CommandVocabulary vocabulary, CommandRegistry registry) {
 		for (String match : matches) {
-			if (commands[Type.START.resourceArrayIndex].equalsIgnoreCase(match)) {
-				return new StartVibratorCommand(activity);
-			}
-			if (commands[Type.STOP.resourceArrayIndex].equalsIgnoreCase(match)) {
-				return new StopVibratorCommand(activity);
-			}
-			if (commands[Type.DEC_FREQ.resourceArrayIndex]
-					.equalsIgnoreCase(match)) {
-				return new DecreaseFreqCommand(activity);
-			}
-			if (commands[Type.INC_FREQ.resourceArrayIndex]
-					.equalsIgnoreCase(match)) {
-				return new IncreaseFreqCommand(activity);
+			final CommandVocabulary.Entry entry = vocabulary.lookup(match);
+			if (entry != null) {
+				return registry.get(entry);
 			}
-			if (commands[Type.DISABLE.resourceArrayIndex]
-					.equalsIgnoreCase(match)) {
-				return new DisableCommand(activity);
-			}
-			for (String patternName : patternNames) {
-				if (patternName.equalsIgnoreCase(match)) {
-					return new SelectCommand(activity, patternName);
-				}
+		}
+		return registry.getNone();
+	}
+
+	/**
+	 * Matches the most likely hypothesis of an utterance that is still going
+	 * on. A command is only returned once no further words could turn the
+	 * phrase into another one, e.g. "stop" fires at once unless there is a
+	 * pattern called "stop and go".
+	 * 
+	 * @return command for the partial hypothesis or a command that does
+	 *         nothing
+	 */
+	public static ICommand makePartial(List<String> partials,
+			CommandVocabulary vocabulary, CommandRegistry registry) {
+		if (!partials.isEmpty()) {
+			final CommandVocabulary.Entry entry = vocabulary
+					.lookupPrefix(partials.get(0));
+			if (entry != null) {
+				return registry.get(entry);
 			}
 		}
-		return new BaseCommand(activity, Type.BASE);
+		return registry.getNone();
+	}
+
+	/**
+	 * Like {@link #make(Collection, CommandVocabulary, CommandRegistry)} but
+	 * tolerates extra words, misspellings and phrases that sound alike.
+	 * 
+	 * @param confidences
+	 *            recognizer confidence per hypothesis, may be null
+	 * @param threshold
+	 *            minimum score between 0 and 1 a hypothesis must reach
+	 */
+	public static ICommand make(List<String> matches, float[] confidences,
+			CommandVocabulary vocabulary, float threshold,
+			CommandRegistry registry) {
+		final CommandVocabulary.Entry entry = vocabulary.match(matches,
+				confidences, threshold);
+		if (entry != null) {
+			return registry.get(entry);
+		}
+		return registry.getNone();
 	}
 }
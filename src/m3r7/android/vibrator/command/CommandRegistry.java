@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.command;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import m3r7.android.vibrator.ICommand;
+import m3r7.android.vibrator.ICommandTarget;
+import m3r7.android.vibrator.ICommand.Type;
+
+/**
+ * The commands of one {@link ICommandTarget}. Commands hold no state besides
+ * their target and pattern name, so each one is created once and executed as
+ * often as it is recognized.
+ */
+public class CommandRegistry {
+
+	private final ICommandTarget target;
+	private final Map<Type, ICommand> commands = new EnumMap<Type, ICommand>(
+			Type.class);
+	// SELECT commands interned by pattern name
+	private final Map<String, ICommand> selectCommands = new HashMap<String, ICommand>();
+
+	public CommandRegistry(ICommandTarget target) {
+		this.target = target;
+		commands.put(Type.BASE, new BaseCommand(target, Type.BASE));
+		commands.put(Type.START, new StartVibratorCommand(target));
+		commands.put(Type.STOP, new StopVibratorCommand(target));
+		commands.put(Type.DEC_FREQ, new DecreaseFreqCommand(target));
+		commands.put(Type.INC_FREQ, new IncreaseFreqCommand(target));
+		commands.put(Type.DISABLE, new DisableCommand(target));
+	}
+
+	/**
+	 * @return the command of the given type, a command that does nothing for
+	 *         {@link Type#SELECT} which needs a pattern name
+	 */
+	public ICommand get(Type type) {
+		final ICommand command = commands.get(type);
+		return command != null ? command : getNone();
+	}
+
+	public ICommand getSelect(String patternName) {
+		ICommand command = selectCommands.get(patternName);
+		if (command == null) {
+			command = new SelectCommand(target, patternName);
+			selectCommands.put(patternName, command);
+		}
+		return command;
+	}
+
+	/**
+	 * @return command that does nothing
+	 */
+	public ICommand getNone() {
+		return commands.get(Type.BASE);
+	}
+
+	/**
+	 * Forgets the SELECT commands of patterns that no longer exist.
+	 */
+	public void retainPatterns(Collection<String> patternNames) {
+		selectCommands.keySet().retainAll(patternNames);
+	}
+
+	ICommand get(CommandVocabulary.Entry entry) {
+		if (entry.type == Type.SELECT) {
+			return getSelect(entry.patternName);
+		}
+		return get(entry.type);
+	}
+
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.command;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import m3r7.android.vibrator.ICommand.Type;
+
+/**
+ * Case-folded lookup table of everything that can be said as a voice command :
+ * the command names plus the names of all patterns. Built once per pattern set
+ * so that matching a recognizer hypothesis is a single hash lookup. Phrases
+ * are kept with single spaces between words.
+ * <p>
+ * For fuzzy matching the phrases are also grouped by length : the score a
+ * phrase has to beat bounds its edit distance, and with it the lengths of
+ * the phrases worth comparing.
+ */
+public class CommandVocabulary {
+
+	private static final Type[] VOICE_COMMANDS = { Type.START, Type.STOP,
+			Type.DEC_FREQ, Type.INC_FREQ, Type.DISABLE };
+
+	/*
+	 * similarity of a match that ignores extra words around the phrase, and
+	 * of two phrases that only sound alike
+	 */
+	private static final float PARTIAL_PENALTY = 0.9f;
+	private static final float PHONETIC_SIMILARITY = 0.8f;
+	private static final Entry AMBIGUOUS = new Entry(Type.BASE, null);
+	private static final String VOWELS = "aeiouyıöüâîû";
+	/*
+	 * shorter sound keys say nothing about a phrase, e.g. names made of
+	 * digits only all have the empty key
+	 */
+	private static final int MIN_PHONETIC_LENGTH = 2;
+	// keeps rounding of float similarities from pruning a candidate
+	private static final float SIMILARITY_SLACK = 1e-4f;
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private final Map<String, Entry> entries;
+	// sorted, so that phrases extending a phrase directly follow it
+	private final String[] keys;
+	// indices into keys by key length, in the order of keys
+	private final int[][] keysByLength;
+	private final Map<String, Entry> phoneticEntries;
+	private final int maxWords;
+
+	/**
+	 * @param commands
+	 *            command names, indexed by {@link Type#resourceArrayIndex}
+	 * @param patternNames
+	 *            names of the patterns that can be selected
+	 */
+	public CommandVocabulary(String[] commands,
+			Collection<String> patternNames) {
+		entries = new HashMap<String, Entry>(
+				(patternNames.size() + VOICE_COMMANDS.length) * 2);
+		for (String patternName : patternNames) {
+			entries.put(normalize(patternName), new Entry(Type.SELECT,
+					patternName));
+		}
+		// command names take precedence over pattern names
+		for (Type type : VOICE_COMMANDS) {
+			entries.put(normalize(commands[type.resourceArrayIndex]),
+					new Entry(type, null));
+		}
+		keys = entries.keySet().toArray(new String[entries.size()]);
+		Arrays.sort(keys);
+		phoneticEntries = new HashMap<String, Entry>(keys.length * 2);
+		int words = 1;
+		int maxLength = 0;
+		for (String key : keys) {
+			maxLength = Math.max(maxLength, key.length());
+		}
+		final int[] lengthCounts = new int[maxLength + 1];
+		for (String key : keys) {
+			lengthCounts[key.length()]++;
+		}
+		keysByLength = new int[maxLength + 1][];
+		for (int length = 0; length <= maxLength; length++) {
+			keysByLength[length] = new int[lengthCounts[length]];
+			lengthCounts[length] = 0;
+		}
+		for (int i = 0; i < keys.length; i++) {
+			final String key = keys[i];
+			final int length = key.length();
+			keysByLength[length][lengthCounts[length]++] = i;
+			final Entry entry = entries.get(key);
+			final String phonetic = phonetic(key);
+			if (phonetic.length() >= MIN_PHONETIC_LENGTH) {
+				final Entry previous = phoneticEntries.put(phonetic, entry);
+				if (previous != null && previous != entry) {
+					phoneticEntries.put(phonetic, AMBIGUOUS);
+				}
+			}
+			words = Math.max(words, countWords(key));
+		}
+		maxWords = words;
+	}
+
+	/**
+	 * @return the entry matching the given hypothesis, ignoring case, or null
+	 */
+	Entry lookup(String hypothesis) {
+		return entries.get(normalize(hypothesis));
+	}
+
+	/**
+	 * Matches the beginning of an utterance. Unlike {@link #lookup(String)}
+	 * the phrase must not be the first words of a longer phrase as well,
+	 * since the speaker may still be saying that one.
+	 * 
+	 * @return the entry matching partial, or null if there is none or more
+	 *         words could lead to another entry
+	 */
+	Entry lookupPrefix(String partial) {
+		final String phrase = normalize(partial);
+		final Entry entry = entries.get(phrase);
+		if (entry == null) {
+			return null;
+		}
+		final String extended = phrase + ' ';
+		for (int i = Arrays.binarySearch(keys, phrase) + 1; i < keys.length
+				&& keys[i].startsWith(phrase); i++) {
+			if (keys[i].startsWith(extended)) {
+				return null;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Scores every hypothesis against the vocabulary and returns the best
+	 * entry whose score reaches threshold. A score is the recognizer's
+	 * confidence for the hypothesis times the similarity of the phrase found
+	 * in it : 1 for an exact match, less if the phrase is surrounded by other
+	 * words, misspelled (edit distance) or only sounds alike.
+	 * 
+	 * @param confidences
+	 *            recognizer confidence per hypothesis, may be null
+	 * @param threshold
+	 *            minimum score between 0 and 1
+	 * @return best entry or null if no score reaches threshold
+	 */
+	Entry match(List<String> hypotheses, float[] confidences, float threshold) {
+		Entry best = null;
+		float bestScore = threshold;
+		final boolean hasConfidences = confidences != null
+				&& confidences.length == hypotheses.size();
+		for (int i = 0; i < hypotheses.size(); i++) {
+			final float confidence = hasConfidences ? confidences[i] : 1f;
+			if (!isBetter(confidence, bestScore, best)) {
+				continue;// cannot beat the best one found so far
+			}
+			final String hypothesis = normalize(hypotheses.get(i));
+			final Entry exact = entries.get(hypothesis);
+			if (exact != null) {
+				best = exact;
+				bestScore = confidence;
+				continue;
+			}
+			final String[] words = split(hypothesis);
+			for (int n = Math.min(maxWords, words.length); n > 0; n--) {
+				final float penalty = n == words.length ? 1f : PARTIAL_PENALTY;
+				for (int start = 0; start + n <= words.length; start++) {
+					final float factor = confidence * penalty;
+					final Scored scored = score(join(words, start, n),
+							factor > 0f ? bestScore / factor : 0f);
+					final float score = confidence * penalty
+							* scored.similarity;
+					if (scored.entry != null
+							&& isBetter(score, bestScore, best)) {
+						best = scored.entry;
+						bestScore = score;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Earlier hypotheses win ties, the threshold itself is a passing score.
+	 */
+	private static boolean isBetter(float score, float bestScore, Entry best) {
+		return score > bestScore || (best == null && score == bestScore);
+	}
+
+	/**
+	 * @param minSimilarity
+	 *            similarity below which a match would not be used, phrases
+	 *            that cannot reach it are not compared
+	 * @return the most similar entry, the first of the sorted keys on ties
+	 */
+	private Scored score(String phrase, float minSimilarity) {
+		final Entry exact = entries.get(phrase);
+		if (exact != null) {
+			return new Scored(exact, 1f);
+		}
+		int bestIndex = -1;
+		float bestSimilarity = 0f;
+		final int length = phrase.length();
+		float bound = Math.max(minSimilarity - SIMILARITY_SLACK, 0f);
+		/*
+		 * similarity is 1 - distance / max(lengths) and the distance is at
+		 * least the difference of the lengths, so keys shorter than
+		 * bound * length or longer than length / bound cannot reach bound
+		 */
+		final int shortest = (int) Math.ceil(bound * length);
+		final int longest = bound > 0f ? (int) Math.min(
+				keysByLength.length - 1, Math.floor(length / bound))
+				: keysByLength.length - 1;
+		for (int keyLength = shortest; keyLength <= longest; keyLength++) {
+			final int maxLength = Math.max(keyLength, length);
+			for (int index : keysByLength[keyLength]) {
+				final int maxDistance = (int) ((1f - bound) * maxLength);
+				final int distance = editDistance(keys[index], phrase,
+						maxDistance);
+				if (distance > maxDistance) {
+					continue;
+				}
+				final float similarity = 1f - distance / (float) maxLength;
+				final boolean tie = similarity == bestSimilarity
+						&& index < bestIndex;
+				if (similarity > bestSimilarity || tie) {
+					bestIndex = index;
+					bestSimilarity = similarity;
+					bound = Math.max(bound, similarity - SIMILARITY_SLACK);
+				}
+			}
+		}
+		Entry best = bestIndex < 0 ? null : entries.get(keys[bestIndex]);
+		// keys that are too short are not in phoneticEntries
+		final Entry phonetic = phoneticEntries.get(phonetic(phrase));
+		if (phonetic != null && phonetic != AMBIGUOUS
+				&& PHONETIC_SIMILARITY > bestSimilarity) {
+			best = phonetic;
+			bestSimilarity = PHONETIC_SIMILARITY;
+		}
+		return new Scored(best, bestSimilarity);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Maps every character the way {@link String#equalsIgnoreCase(String)}
+	 * compares them, so that two strings fold to the same key exactly when
+	 * they are equal ignoring case.
+	 */
+	static String fold(String str) {
+		final int length = str.length();
+		final char[] folded = new char[length];
+		for (int i = 0; i < length; i++) {
+			folded[i] = Character.toLowerCase(Character.toUpperCase(str
+					.charAt(i)));
+		}
+		return new String(folded);
+	}
+
+	/**
+	 * Folds str and collapses the whitespace between its words to single
+	 * spaces.
+	 */
+	static String normalize(String str) {
+		final String[] words = split(fold(str));
+		return join(words, 0, words.length);
+	}
+
+	private static int countWords(String normalized) {
+		int words = 1;
+		for (int i = normalized.indexOf(' '); i >= 0; i = normalized
+				.indexOf(' ', i + 1)) {
+			words++;
+		}
+		return words;
+	}
+
+	private static String[] split(String folded) {
+		return WHITESPACE.split(folded.trim());
+	}
+
+	private static String join(String[] words, int start, int count) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = start; i < start + count; i++) {
+			if (i > start) {
+				sb.append(' ');
+			}
+			sb.append(words[i]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Levenshtein distance of two strings using two rows of the table.
+	 */
+	static int editDistance(String a, String b) {
+		return editDistance(a, b, Integer.MAX_VALUE - 1);
+	}
+
+	/**
+	 * Same as {@link #editDistance(String, String)} but gives up as soon as
+	 * a whole row of the table exceeds max.
+	 * 
+	 * @return the distance, or max + 1 if it is greater than max
+	 */
+	static int editDistance(String a, String b, int max) {
+		if (Math.abs(a.length() - b.length()) > max) {
+			return max + 1;
+		}
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			int rowMin = i;
+			final char ca = a.charAt(i - 1);
+			for (int j = 1; j <= b.length(); j++) {
+				final int substitution = previous[j - 1]
+						+ (ca == b.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(substitution, Math.min(previous[j] + 1,
+						current[j - 1] + 1));
+				rowMin = Math.min(rowMin, current[j]);
+			}
+			if (rowMin > max) {// later rows only grow
+				return max + 1;
+			}
+			final int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return Math.min(previous[b.length()], max + 1);
+	}
+
+	/**
+	 * Rough, language independent sound key : the first letter followed by
+	 * the remaining consonants with repeated letters collapsed, e.g. both
+	 * "fast" and "fest" become "fst".
+	 */
+	static String phonetic(String folded) {
+		final StringBuilder sb = new StringBuilder(folded.length());
+		char previous = 0;
+		for (int i = 0; i < folded.length(); i++) {
+			final char c = folded.charAt(i);
+			if (!Character.isLetter(c) || c == previous) {
+				previous = c;
+				continue;
+			}
+			if (sb.length() == 0 || VOWELS.indexOf(c) < 0) {
+				sb.append(c);
+			}
+			previous = c;
+		}
+		return sb.toString();
+	}
+
+	private static class Scored {
+		final Entry entry;
+		final float similarity;
+
+		Scored(Entry entry, float similarity) {
+			this.entry = entry;
+			this.similarity = similarity;
+		}
+	}
+
+	static class Entry {
+		final Type type;
+		final String patternName;
+
+		Entry(Type type, String patternName) {
+			this.type = type;
+			this.patternName = patternName;
+		}
+	}
+
+}
@@ -16,17 +16,17 @@
 
 package m3r7.android.vibrator.command;
 
-import m3r7.android.vibrator.VibratorActivity;
+import m3r7.android.vibrator.ICommandTarget;
 
 class DecreaseFreqCommand extends BaseCommand {
 
-	DecreaseFreqCommand(VibratorActivity activity) {
-		super(activity, Type.DEC_FREQ);
+	DecreaseFreqCommand(ICommandTarget target) {
+		super(target, Type.DEC_FREQ);
 	}
 
 	@Override
 	public void execute() {
-		getActivity().actionDecreaseFreq();
+		getTarget().actionDecreaseFreq();
 	}
 
 }
@@ -16,17 +16,17 @@
 
 package m3r7.android.vibrator.command;
 
-import m3r7.android.vibrator.VibratorActivity;
+import m3r7.android.vibrator.ICommandTarget;
 
 class DisableCommand extends BaseCommand {
 
-	DisableCommand(VibratorActivity activity) {
-		super(activity, Type.DISABLE);
+	DisableCommand(ICommandTarget target) {
+		super(target, Type.DISABLE);
 	}
 
 	@Override
 	public void execute() {
-		getActivity().actionDisableVoice();
+		getTarget().actionDisableVoice();
 	}
 
 }
@@ -16,17 +16,17 @@
 
 package m3r7.android.vibrator.command;
 
-import m3r7.android.vibrator.VibratorActivity;
+import m3r7.android.vibrator.ICommandTarget;
 
 class IncreaseFreqCommand extends BaseCommand {
 
-	IncreaseFreqCommand(VibratorActivity activity) {
-		super(activity, Type.INC_FREQ);
+	IncreaseFreqCommand(ICommandTarget target) {
+		super(target, Type.INC_FREQ);
 	}
 
 	@Override
 	public void execute() {
-		getActivity().actionIncreaseFreq();
+		getTarget().actionIncreaseFreq();
 	}
 
 }
@@ -16,20 +16,20 @@
 
 package m3r7.android.vibrator.command;
 
-import m3r7.android.vibrator.VibratorActivity;
+import m3r7.android.vibrator.ICommandTarget;
 
 class SelectCommand extends BaseCommand {
 
 	private final String patternName;
 
-	SelectCommand(VibratorActivity activity, String patternName) {
-		super(activity, Type.SELECT);
+	SelectCommand(ICommandTarget target, String patternName) {
+		super(target, Type.SELECT);
 		this.patternName = patternName;
 	}
 
 	@Override
 	public void execute() {
-		getActivity().actionSelectPattern(patternName);
+		getTarget().actionSelectPattern(patternName);
 	}
 
 }
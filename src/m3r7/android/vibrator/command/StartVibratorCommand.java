@@ -16,17 +16,17 @@
 
 package m3r7.android.vibrator.command;
 
-import m3r7.android.vibrator.VibratorActivity;
+import m3r7.android.vibrator.ICommandTarget;
 
 class StartVibratorCommand extends BaseCommand {
 
-	StartVibratorCommand(VibratorActivity activity) {
-		super(activity, Type.START);
+	StartVibratorCommand(ICommandTarget target) {
+		super(target, Type.START);
 	}
 
 	@Override
 	public void execute() {
-		getActivity().actionStartVibrator();
+		getTarget().actionStartVibrator();
 	}
 
 }
@@ -16,17 +16,17 @@
 
 package m3r7.android.vibrator.command;
 
-import m3r7.android.vibrator.VibratorActivity;
+import m3r7.android.vibrator.ICommandTarget;
 
 class StopVibratorCommand extends BaseCommand {
 
-	StopVibratorCommand(VibratorActivity activity) {
-		super(activity, Type.STOP);
+	StopVibratorCommand(ICommandTarget target) {
+		super(target, Type.STOP);
 	}
 
 	@Override
 	public void execute() {
-		getActivity().actionStopVibrator();
+		getTarget().actionStopVibrator();
 	}
 
 }
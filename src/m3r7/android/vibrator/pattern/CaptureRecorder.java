@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.pattern;
+
+/**
+ * Records the times the capture button is pressed and released into a
+ * growable long array, so that nothing is boxed or allocated while the user
+ * is tapping. The segments are computed once when the capture finishes.
+ */
+public final class CaptureRecorder {
+
+	private long[] timestamps;
+	// even indices hold press times, odd ones release times
+	private int count;
+
+	public CaptureRecorder() {
+		this(64);
+	}
+
+	public CaptureRecorder(int expectedEvents) {
+		timestamps = new long[Math.max(2, expectedEvents)];
+	}
+
+	/**
+	 * Records a press, ignored if the button is pressed already.
+	 */
+	public void press(long time) {
+		if (!isPressed()) {
+			record(time);
+		}
+	}
+
+	/**
+	 * Records a release, ignored if the button is not pressed.
+	 */
+	public void release(long time) {
+		if (isPressed()) {
+			record(time);
+		}
+	}
+
+	public boolean isPressed() {
+		return count % 2 == 1;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * @return time of the first press
+	 * @throws IllegalStateException
+	 *             if nothing has been recorded
+	 */
+	public long getStartTime() {
+		if (count == 0) {
+			throw new IllegalStateException("Nothing recorded");
+		}
+		return timestamps[0];
+	}
+
+	public void clear() {
+		count = 0;
+	}
+
+	/**
+	 * Closes the recording at endTime : a press still going on vibrates until
+	 * endTime, otherwise the last release is followed by silence until then.
+	 * 
+	 * @return timeline starting with the first press, empty if nothing has
+	 *         been recorded
+	 */
+	public Timeline finish(long endTime) {
+		if (count == 0) {
+			return Timeline.EMPTY;
+		}
+		final long remaining = Math.max(0L, endTime - timestamps[count - 1]);
+		final boolean pressed = isPressed();
+		final int length;
+		if (pressed) {
+			length = remaining == 0L ? count - 1 : count + 1;
+		} else {
+			length = count;
+		}
+		final int[] durations = new int[length];
+		for (int i = 0; i < count - 1; i++) {
+			durations[i] = toDuration(timestamps[i + 1] - timestamps[i]);
+		}
+		if (pressed && remaining > 0L) {
+			durations[count - 1] = toDuration(remaining);
+			durations[count] = 0;
+		} else if (!pressed) {
+			durations[count - 1] = toDuration(remaining);
+		}
+		return Timeline.wrap(durations);
+	}
+
+	private void record(long time) {
+		if (count == timestamps.length) {
+			final long[] grown = new long[timestamps.length * 2];
+			System.arraycopy(timestamps, 0, grown, 0, count);
+			timestamps = grown;
+		}
+		timestamps[count++] = time;
+	}
+
+	private static int toDuration(long millis) {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(0L, millis));
+	}
+
+}
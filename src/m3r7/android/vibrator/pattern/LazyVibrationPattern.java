@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.pattern;
+
+import m3r7.android.vibrator.IPersister;
+import m3r7.android.vibrator.IVibrationPattern;
+
+/**
+ * Index entry of a stored pattern. Name, segment count and total duration are
+ * known up front; the timeline is read from the persister the first time any
+ * other method is called. A failed read is not kept, the next call reads
+ * again.
+ */
+class LazyVibrationPattern implements IVibrationPattern {
+
+	private final String name;
+	private final int segmentCount;
+	private final long totalDuration;
+	private final IPersister persister;
+	private volatile IVibrationPattern loaded;
+
+	LazyVibrationPattern(String name, int segmentCount, long totalDuration,
+			IPersister persister) {
+		this.name = name;
+		this.segmentCount = segmentCount;
+		this.totalDuration = totalDuration;
+		this.persister = persister;
+	}
+
+	private IVibrationPattern load() {
+		IVibrationPattern pattern = loaded;
+		if (pattern == null) {
+			synchronized (this) {
+				pattern = loaded;
+				if (pattern == null) {
+					pattern = setLoaded(persister.loadPattern(name));
+				}
+			}
+		}
+		if (pattern == null) {// deleted or unreadable meanwhile
+			return new VibrationPattern(name, Timeline.of(new int[0]));
+		}
+		return pattern;
+	}
+
+	/**
+	 * Reads the timeline through the persister in the background unless it
+	 * has been read already, then calls back with this pattern, or with null
+	 * if the stored pattern was deleted or could not be read.
+	 */
+	void prefetch(final IPersister.Callback<IVibrationPattern> callback) {
+		if (loaded != null) {
+			callback.onResult(this);
+			return;
+		}
+		persister.loadPattern(name,
+				new IPersister.Callback<IVibrationPattern>() {
+					@Override
+					public void onResult(IVibrationPattern result) {
+						callback.onResult(setLoaded(result) == null ? null
+								: LazyVibrationPattern.this);
+					}
+				});
+	}
+
+	/**
+	 * @return the loaded pattern, which is the first non null one set
+	 */
+	private synchronized IVibrationPattern setLoaded(
+			IVibrationPattern pattern) {
+		if (loaded == null) {
+			loaded = pattern;
+		}
+		return loaded;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int getSegmentCount() {
+		return segmentCount;
+	}
+
+	@Override
+	public long getTotalDuration() {
+		return totalDuration;
+	}
+
+	@Override
+	public Timeline getTimeline() {
+		return load().getTimeline();
+	}
+
+	@Override
+	public IVibrationPattern scale(int modifier) {
+		if (modifier == 0) {
+			return this;
+		}
+		return load().scale(modifier);
+	}
+
+	@Override
+	public Timeline getTempoVariant(double factor) {
+		return load().getTempoVariant(factor);
+	}
+
+	@Override
+	public Scalability isScalable(int modifier) {
+		return load().isScalable(modifier);
+	}
+
+	@Override
+	public long[] getVibratable(long waitTime) {
+		return load().getVibratable(waitTime);
+	}
+
+	@Override
+	public int getVibratable(long waitTime, long[] buffer) {
+		return load().getVibratable(waitTime, buffer);
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.pattern;
+
+import java.util.Arrays;
+
+/**
+ * Timeline keeping segment i as its vibration duration at index 2i and its
+ * silence duration at index 2i+1 of a single int array.
+ */
+final class PackedTimeline extends Timeline {
+
+	private final int[] durations;
+
+	PackedTimeline(int[] durations) {
+		this.durations = durations;
+	}
+
+	@Override
+	public int size() {
+		return durations.length / 2;
+	}
+
+	@Override
+	public int getVibration(int index) {
+		return durations[index * 2];
+	}
+
+	@Override
+	public int getSilence(int index) {
+		return durations[index * 2 + 1];
+	}
+
+	@Override
+	public long getTotalDuration() {
+		long total = 0L;
+		for (int d : durations) {
+			total += d;
+		}
+		return total;
+	}
+
+	@Override
+	public int read(int fromIndex, long[] buffer, int offset, int count) {
+		final int from = fromIndex * 2;
+		final int end = (int) Math.min(durations.length, from + count * 2L);
+		for (int i = from; i < end; i++) {
+			buffer[offset++] = durations[i];
+		}
+		return Math.max(0, (end - from) / 2);
+	}
+
+	@Override
+	public int[] toArray() {
+		return durations.clone();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof PackedTimeline) {
+			return Arrays.equals(durations, ((PackedTimeline) o).durations);
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(durations);
+	}
+
+}
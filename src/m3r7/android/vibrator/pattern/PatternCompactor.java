@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.pattern;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import m3r7.android.vibrator.IVibrationPattern;
+
+/**
+ * Removes the jitter of captured patterns. Vibrations and silences shorter
+ * than a threshold are folded into the surrounding state, which merges the
+ * states before and after them into one, and runs of identical segments are
+ * stored once with their length, see {@link RunLengthTimeline}. The total
+ * duration never changes. The first vibration and the last silence are never
+ * folded away, since they have only one neighbour, though they may absorb a
+ * short one next to them.
+ */
+public final class PatternCompactor {
+
+	/**
+	 * the shortest duration a pattern can still be scaled with
+	 */
+	public static final int DEFAULT_THRESHOLD = VibrationPattern.MIN_LENGTH;
+
+	/*
+	 * a run costs about as much to store as one and a half segments, so runs
+	 * are only stored if there are at most two for every three segments
+	 */
+	private static final int MAX_RUNS = 2;
+	private static final int PER_SEGMENTS = 3;
+
+	private PatternCompactor() {
+	}
+
+	public static Timeline compact(Timeline timeline) {
+		return compact(timeline, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param threshold
+	 *            durations below threshold milliseconds are folded into their
+	 *            neighbours
+	 * @return compacted timeline, or timeline itself if nothing was folded
+	 *         and it has no runs to encode or stores its repetitions already
+	 */
+	public static Timeline compact(Timeline timeline, int threshold) {
+		final int[] durations = timeline.toArray();
+		final int[] merged = merge(durations, threshold);
+		final boolean folded = merged.length != durations.length;
+		if (!folded && storesRepetitions(timeline)) {
+			return timeline;
+		}
+		final Timeline compacted = encodeRuns(merged);
+		if (folded || compacted instanceof RunLengthTimeline) {
+			return compacted;
+		}
+		return timeline;
+	}
+
+	public static Timeline compactCapture(Timeline timeline) {
+		return compactCapture(timeline, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Compacts timeline and stores repetitions of a motif once, see
+	 * {@link PeriodDetector}. This is the form captured patterns are saved
+	 * in.
+	 * 
+	 * @return the stored form, or timeline itself if nothing changed
+	 */
+	public static Timeline compactCapture(Timeline timeline, int threshold) {
+		return PeriodDetector.detect(compact(timeline, threshold));
+	}
+
+	/**
+	 * Brings patterns stored before captures were compacted into the form of
+	 * {@link #compactCapture(Timeline, int)}. Reads every timeline, so it
+	 * belongs on the persister's thread, see SQLitePersister's upgrade to
+	 * database version 3.
+	 * 
+	 * @return the patterns that changed
+	 */
+	public static List<IVibrationPattern> compactAll(
+			Collection<IVibrationPattern> patterns, int threshold) {
+		final List<IVibrationPattern> changed = new ArrayList<IVibrationPattern>();
+		for (IVibrationPattern pattern : patterns) {
+			final Timeline timeline = pattern.getTimeline();
+			final Timeline compacted = compactCapture(timeline, threshold);
+			if (compacted != timeline) {
+				changed.add(PatternMaker.make(pattern.getName(), compacted));
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Single pass over the alternating durations. A duration below threshold
+	 * that has a neighbour on both sides is merged with both of them; the
+	 * result is never shorter than its parts, so no earlier duration has to
+	 * be looked at again.
+	 * 
+	 * @return vibration and silence durations, even length
+	 */
+	private static int[] merge(int[] durations, int threshold) {
+		final long[] stack = new long[durations.length];
+		int top = 0;
+		for (int d : durations) {
+			if (top >= 2 && stack[top - 1] < threshold) {
+				// fold the short one and d into the one before it
+				stack[top - 2] += stack[top - 1] + d;
+				top--;
+			} else {
+				stack[top++] = d;
+			}
+		}
+		// every merge removes a vibration and a silence, top stays even
+		final int[] merged = new int[top];
+		for (int i = 0; i < top; i++) {
+			merged[i] = (int) Math.min(Integer.MAX_VALUE, stack[i]);
+		}
+		return merged;
+	}
+
+	/**
+	 * @return durations as a {@link RunLengthTimeline} if there are few
+	 *         enough runs of identical segments, packed as they are otherwise
+	 */
+	private static Timeline encodeRuns(int[] durations) {
+		final int size = durations.length / 2;
+		int runCount = 0;
+		for (int i = 0; i < size; i++) {
+			if (i == 0 || !isSameSegment(durations, i - 1, i)) {
+				runCount++;
+			}
+		}
+		if (size == 0 || runCount * PER_SEGMENTS > size * MAX_RUNS) {
+			return Timeline.wrap(durations);
+		}
+		final int[] runs = new int[runCount * 2];
+		final int[] counts = new int[runCount];
+		int r = -1;
+		for (int i = 0; i < size; i++) {
+			if (i == 0 || !isSameSegment(durations, i - 1, i)) {
+				r++;
+				runs[r * 2] = durations[i * 2];
+				runs[r * 2 + 1] = durations[i * 2 + 1];
+			}
+			counts[r]++;
+		}
+		return new RunLengthTimeline(Timeline.wrap(runs), counts);
+	}
+
+	private static boolean storesRepetitions(Timeline timeline) {
+		return timeline instanceof RunLengthTimeline
+				|| timeline instanceof PeriodicTimeline;
+	}
+
+	private static boolean isSameSegment(int[] durations, int i, int j) {
+		return durations[i * 2] == durations[j * 2]
+				&& durations[i * 2 + 1] == durations[j * 2 + 1];
+	}
+
+}
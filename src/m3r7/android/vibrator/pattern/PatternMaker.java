@@ -16,14 +16,102 @@
 
 package m3r7.android.vibrator.pattern;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import m3r7.android.vibrator.IPersister;
+import m3r7.android.vibrator.IResources;
 import m3r7.android.vibrator.IVibrationPattern;
-import android.util.Pair;
+import m3r7.android.vibrator.R;
 
 public class PatternMaker {
-	public static IVibrationPattern make(String name,
-			List<Pair<Integer, Integer>> pattern) {
-		return new VibrationPattern(name, pattern);
+	public static IVibrationPattern make(String name, Timeline timeline) {
+		return new VibrationPattern(name, timeline);
+	}
+
+	/**
+	 * Calls back with pattern once its timeline can be used without reading
+	 * from the disk : at once for patterns in memory, on the main thread once
+	 * read in the background for entries of
+	 * {@link IPersister#getPatternIndex()}. Calls back with null if the entry
+	 * could not be read.
+	 */
+	public static void prefetch(IVibrationPattern pattern,
+			IPersister.Callback<IVibrationPattern> callback) {
+		if (pattern instanceof LazyVibrationPattern) {
+			((LazyVibrationPattern) pattern).prefetch(callback);
+		} else {
+			callback.onResult(pattern);
+		}
+	}
+
+	/**
+	 * @return the patterns that come with the app, defined in resources
+	 */
+	public static List<IVibrationPattern> makePredefined(IResources resources) {
+		final List<IVibrationPattern> predefinedPatterns = new ArrayList<IVibrationPattern>();
+		predefinedPatterns.add(makePredefined(resources,
+				R.string.predefined_pattern_continuous,
+				R.array.predefined_pattern_continuous));
+		predefinedPatterns.add(makePredefined(resources,
+				R.string.predefined_pattern_regular,
+				R.array.predefined_pattern_regular));
+		return predefinedPatterns;
+	}
+
+	private static IVibrationPattern makePredefined(IResources resources,
+			int nameId, int durationsId) {
+		return make(resources.getString(nameId), Timeline.of(resources
+				.getIntArray(durationsId)));
+	}
+
+	/**
+	 * @return pattern playing the given patterns one after the other
+	 */
+	public static IVibrationPattern concat(String name,
+			IVibrationPattern... patterns) {
+		final Timeline[] timelines = new Timeline[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			timelines[i] = patterns[i].getTimeline();
+		}
+		return make(name, Timeline.concat(timelines));
+	}
+
+	public static IVibrationPattern repeat(String name,
+			IVibrationPattern pattern, int times) {
+		return make(name, pattern.getTimeline().repeat(times));
+	}
+
+	/**
+	 * @see Timeline#interleave(Timeline)
+	 */
+	public static IVibrationPattern interleave(String name,
+			IVibrationPattern first, IVibrationPattern second) {
+		return make(name, first.getTimeline().interleave(
+				second.getTimeline()));
+	}
+
+	public static IVibrationPattern reverse(String name,
+			IVibrationPattern pattern) {
+		return make(name, pattern.getTimeline().reverse());
+	}
+
+	/**
+	 * @param factor
+	 *            2 plays the pattern at half the speed, 0.5 at twice the speed
+	 */
+	public static IVibrationPattern stretch(String name,
+			IVibrationPattern pattern, double factor) {
+		return make(name, pattern.getTimeline().stretch(factor));
+	}
+
+	/**
+	 * @return a pattern that reports the given metadata right away and loads
+	 *         its timeline from persister on first use
+	 */
+	public static IVibrationPattern makeLazy(String name, int segmentCount,
+			long totalDuration, IPersister persister) {
+		return new LazyVibrationPattern(name, segmentCount, totalDuration,
+				persister);
 	}
 }
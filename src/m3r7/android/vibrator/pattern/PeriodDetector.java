@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.pattern;
+
+/**
+ * Finds timelines that repeat a short motif, the way patterns captured by
+ * tapping a rhythm over and over do. Periods of 1, 2, ... segments are tried
+ * in turn; the first one at which every duration of the motif spreads by no
+ * more than a tolerance across all repetitions is the period. Comparing the
+ * whole spread rather than neighbouring repetitions keeps a rhythm that
+ * slowly speeds up or slows down from passing as a constant one. The last
+ * silence is not compared since it only lasts until the capture ended.
+ */
+public final class PeriodDetector {
+
+	/**
+	 * jitter allowed between repetitions, in milliseconds
+	 */
+	public static final int DEFAULT_TOLERANCE = PatternCompactor.DEFAULT_THRESHOLD;
+
+	// a motif must be heard at least this many times
+	private static final int MIN_REPEATS = 3;
+
+	private PeriodDetector() {
+	}
+
+	public static Timeline detect(Timeline timeline) {
+		return detect(timeline, DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * @return a timeline storing the motif once with its repeat count and the
+	 *         segments after its last complete repetition, or timeline itself
+	 *         if it does not repeat. Each motif duration is the average of
+	 *         the repetitions.
+	 */
+	public static Timeline detect(Timeline timeline, int tolerance) {
+		if (timeline instanceof PeriodicTimeline) {
+			return timeline;
+		}
+		final int size = timeline.size();
+		if (size <= MIN_REPEATS) {
+			return timeline;
+		}
+		final int[] durations = timeline.toArray();
+		// the last segment always goes to the tail
+		final int maxPeriod = (size - 1) / MIN_REPEATS;
+		for (int period = 1; period <= maxPeriod; period++) {
+			if (isPeriodic(durations, period, tolerance)) {
+				return fold(durations, period);
+			}
+		}
+		return timeline;
+	}
+
+	private static boolean isPeriodic(int[] durations, int period,
+			int tolerance) {
+		final int shift = period * 2;
+		final int last = durations.length - 1;
+		for (int k = 0; k < shift; k++) {
+			int min = durations[k];
+			int max = durations[k];
+			for (int i = k + shift; i < last; i += shift) {
+				min = Math.min(min, durations[i]);
+				max = Math.max(max, durations[i]);
+			}
+			if (max - min > tolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Timeline fold(int[] durations, int period) {
+		final int size = durations.length / 2;
+		final int count = (size - 1) / period;
+		final int motifLength = period * 2;
+		final int[] motif = new int[motifLength];
+		for (int k = 0; k < motifLength; k++) {
+			long sum = 0L;
+			for (int r = 0; r < count; r++) {
+				sum += durations[r * motifLength + k];
+			}
+			motif[k] = (int) ((sum + count / 2) / count);
+		}
+		final int tailStart = count * motifLength;
+		final int[] tail = new int[durations.length - tailStart];
+		System.arraycopy(durations, tailStart, tail, 0, tail.length);
+		return new PeriodicTimeline(Timeline.wrap(motif), count, Timeline
+				.wrap(tail));
+	}
+
+}
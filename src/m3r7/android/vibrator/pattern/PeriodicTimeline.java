@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.pattern;
+
+/**
+ * A motif played count times followed by a tail, e.g. a rhythm tapped over
+ * and over during a capture and the segments after its last complete
+ * repetition. Only the motif and the tail are stored.
+ */
+final class PeriodicTimeline extends Timeline {
+
+	final Timeline motif;
+	final int count;
+	final Timeline tail;
+	private final int repeatedSize;
+
+	PeriodicTimeline(Timeline motif, int count, Timeline tail) {
+		if (motif.isEmpty() || count <= 0) {
+			throw new IllegalArgumentException("Empty motif");
+		}
+		final long size = (long) motif.size() * count + tail.size();
+		if (size > Integer.MAX_VALUE / 2) {
+			throw new IllegalArgumentException("Timeline too long : " + size
+					+ " segments");
+		}
+		this.motif = motif;
+		this.count = count;
+		this.tail = tail;
+		repeatedSize = motif.size() * count;
+	}
+
+	@Override
+	public int size() {
+		return repeatedSize + tail.size();
+	}
+
+	@Override
+	public int getVibration(int index) {
+		if (index >= 0 && index < repeatedSize) {
+			return motif.getVibration(index % motif.size());
+		}
+		return tail.getVibration(index - repeatedSize);
+	}
+
+	@Override
+	public int getSilence(int index) {
+		if (index >= 0 && index < repeatedSize) {
+			return motif.getSilence(index % motif.size());
+		}
+		return tail.getSilence(index - repeatedSize);
+	}
+
+	@Override
+	public long getTotalDuration() {
+		return motif.getTotalDuration() * count + tail.getTotalDuration();
+	}
+
+	/**
+	 * The tail is only the end of the recording, a loop is the motif alone.
+	 */
+	@Override
+	public Timeline getLoop() {
+		return motif;
+	}
+
+}
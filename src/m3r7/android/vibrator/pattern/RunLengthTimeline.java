@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package m3r7.android.vibrator.pattern;
+
+import java.util.Arrays;
+
+/**
+ * Runs of identical segments, each stored once with the number of times it
+ * is played in a row, e.g. a capture holding the same rhythm for a while
+ * before changing it. Only the distinct segments and their counts are
+ * stored.
+ */
+final class RunLengthTimeline extends Timeline {
+
+	// one segment per run
+	final Timeline runs;
+	final int[] counts;
+	// ends[r] is the index of the first segment after run r
+	private final int[] ends;
+
+	RunLengthTimeline(Timeline runs, int[] counts) {
+		if (runs.size() != counts.length) {
+			throw new IllegalArgumentException(runs.size() + " runs but "
+					+ counts.length + " counts");
+		}
+		ends = new int[counts.length];
+		long end = 0L;
+		for (int r = 0; r < counts.length; r++) {
+			if (counts[r] <= 0) {
+				throw new IllegalArgumentException("Invalid run length : "
+						+ counts[r]);
+			}
+			end += counts[r];
+			if (end > Integer.MAX_VALUE / 2) {
+				throw new IllegalArgumentException("Timeline too long : "
+						+ end + " segments");
+			}
+			ends[r] = (int) end;
+		}
+		this.runs = runs;
+		this.counts = counts;
+	}
+
+	@Override
+	public int size() {
+		return ends.length == 0 ? 0 : ends[ends.length - 1];
+	}
+
+	@Override
+	public int getVibration(int index) {
+		return runs.getVibration(getRun(index));
+	}
+
+	@Override
+	public int getSilence(int index) {
+		return runs.getSilence(getRun(index));
+	}
+
+	@Override
+	public long getTotalDuration() {
+		long total = 0L;
+		for (int r = 0; r < counts.length; r++) {
+			total += (runs.getVibration(r) + (long) runs.getSilence(r))
+					* counts[r];
+		}
+		return total;
+	}
+
+	@Override
+	public int read(int fromIndex, long[] buffer, int offset, int count) {
+		final int end = (int) Math.min(size(), (long) fromIndex + count);
+		if (fromIndex >= end) {
+			return 0;
+		}
+		int r = getRun(fromIndex);
+		for (int i = fromIndex; i < end; i++) {
+			if (i == ends[r]) {
+				r++;
+			}
+			buffer[offset++] = runs.getVibration(r);
+			buffer[offset++] = runs.getSilence(r);
+		}
+		return end - fromIndex;
+	}
+
+	private int getRun(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index " + index + ", size "
+					+ size());
+		}
+		final int found = Arrays.binarySearch(ends, index);
+		return found >= 0 ? found + 1 : -found - 1;
+	}
+
+}
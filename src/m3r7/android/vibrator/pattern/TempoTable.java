@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.pattern;
+
+/**
+ * Tempo scaling of a timeline by arbitrary factors. The end time of every
+ * duration is computed once; a scaled timeline multiplies those end times by
+ * a 16.16 fixed-point factor and rounds them, so each scaled duration is the
+ * difference of two rounded end times. Rounding errors therefore never add
+ * up and the scaled total is the rounded scaled total of the original.
+ * <p>
+ * Scaled timelines are views over the shared end times. Those requested
+ * through {@link #getVariant(double)} are quantized to steps of 1/64 and
+ * kept, so moving a tempo control back and forth does not allocate once each
+ * step has been visited.
+ * <p>
+ * Timelines repeating a motif, see {@link PeriodDetector}, are scaled as
+ * motif and tail apart, so that every tempo repeats the same motif and plays
+ * the same {@link Timeline#getLoop()}. The scaled total may then be off by
+ * up to half a millisecond per repetition.
+ * <p>
+ * A table of a scaled view shares the end times of the original, so scaling
+ * again rounds every duration only once as well.
+ */
+public final class TempoTable {
+
+	public static final int FRACTION_BITS = 16;
+	public static final int ONE = 1 << FRACTION_BITS;
+
+	private static final int STEPS_PER_UNIT = 64;
+	private static final int STEP = ONE / STEPS_PER_UNIT;
+	private static final int MIN_STEP = STEPS_PER_UNIT / 8;
+	private static final int MAX_STEP = STEPS_PER_UNIT * 8;
+	public static final double MIN_FACTOR = MIN_STEP / (double) STEPS_PER_UNIT;
+	public static final double MAX_FACTOR = MAX_STEP / (double) STEPS_PER_UNIT;
+
+	private final Timeline timeline;
+	// ends[j] is the end time of the j-th duration of the timeline
+	private final long[] ends;
+	// factor ends are scaled by to give timeline, ONE unless it is scaled
+	private final int baseFactor;
+	// tables of motif and tail if timeline is periodic, null otherwise
+	private final TempoTable motif;
+	private final TempoTable tail;
+	private Timeline[] variants;
+
+	public TempoTable(Timeline timeline) {
+		this.timeline = timeline;
+		if (timeline instanceof PeriodicTimeline) {
+			final PeriodicTimeline periodic = (PeriodicTimeline) timeline;
+			motif = new TempoTable(periodic.motif);
+			tail = new TempoTable(periodic.tail);
+			ends = null;
+			baseFactor = ONE;
+			return;
+		}
+		motif = null;
+		tail = null;
+		if (timeline instanceof Scaled) {
+			final Scaled scaled = (Scaled) timeline;
+			ends = scaled.ends;
+			baseFactor = scaled.factor;
+			return;
+		}
+		baseFactor = ONE;
+		final int size = timeline.size();
+		ends = new long[size * 2];
+		long end = 0L;
+		for (int i = 0; i < size; i++) {
+			end += timeline.getVibration(i);
+			ends[i * 2] = end;
+			end += timeline.getSilence(i);
+			ends[i * 2 + 1] = end;
+		}
+	}
+
+	/**
+	 * @return factor as a 16.16 fixed-point number
+	 */
+	public static int toFixedPoint(double factor) {
+		if (!(factor >= 0d) || factor >= Integer.MAX_VALUE / (double) ONE) {
+			throw new IllegalArgumentException("Invalid tempo factor : "
+					+ factor);
+		}
+		return (int) Math.round(factor * ONE);
+	}
+
+	/**
+	 * @return duration times the 16.16 fixed-point factor, rounded down
+	 */
+	public static long scaleDown(long duration, int factor) {
+		return (duration * factor) >> FRACTION_BITS;
+	}
+
+	/**
+	 * @return duration times the 16.16 fixed-point factor, rounded up
+	 */
+	public static long scaleUp(long duration, int factor) {
+		return (duration * factor + ONE - 1) >> FRACTION_BITS;
+	}
+
+	/**
+	 * @param factor
+	 *            16.16 fixed-point factor every duration is multiplied by,
+	 *            e.g. {@code ONE * 2} for half the speed
+	 * @return a new view of the timeline scaled by factor
+	 */
+	public Timeline scale(int factor) {
+		if (factor < 0) {
+			throw new IllegalArgumentException("Negative tempo factor : "
+					+ factor);
+		}
+		if (factor == ONE) {
+			return timeline;
+		}
+		if (motif != null) {
+			return new PeriodicTimeline(motif.scale(factor),
+					((PeriodicTimeline) timeline).count, tail.scale(factor));
+		}
+		if (baseFactor != ONE) {
+			factor = (int) Math.min(Integer.MAX_VALUE, ((long) baseFactor
+					* factor + (ONE >> 1)) >> FRACTION_BITS);
+		}
+		return new Scaled(ends, factor);
+	}
+
+	public Timeline scale(double factor) {
+		return scale(toFixedPoint(factor));
+	}
+
+	/**
+	 * @return the timeline scaled by factor rounded to the closest 1/64
+	 *         within [{@link #MIN_FACTOR}, {@link #MAX_FACTOR}], created on
+	 *         the first request and returned again by later ones
+	 */
+	public synchronized Timeline getVariant(double factor) {
+		if (Double.isNaN(factor)) {
+			throw new IllegalArgumentException("Invalid tempo factor : "
+					+ factor);
+		}
+		final long step = Math.round(factor * STEPS_PER_UNIT);
+		final int index = (int) Math.max(MIN_STEP, Math.min(MAX_STEP, step))
+				- MIN_STEP;
+		if (variants == null) {
+			variants = new Timeline[MAX_STEP - MIN_STEP + 1];
+		}
+		Timeline variant = variants[index];
+		if (variant == null) {
+			variant = scale((index + MIN_STEP) * STEP);
+			variants[index] = variant;
+		}
+		return variant;
+	}
+
+	private static final class Scaled extends Timeline {
+		private final long[] ends;
+		private final int factor;
+
+		Scaled(long[] ends, int factor) {
+			this.ends = ends;
+			this.factor = factor;
+		}
+
+		@Override
+		public int size() {
+			return ends.length / 2;
+		}
+
+		@Override
+		public int getVibration(int index) {
+			return getDuration(index * 2);
+		}
+
+		@Override
+		public int getSilence(int index) {
+			return getDuration(index * 2 + 1);
+		}
+
+		@Override
+		public long getTotalDuration() {
+			return ends.length == 0 ? 0L : scaleEnd(ends.length - 1);
+		}
+
+		private int getDuration(int j) {
+			if (j < 0 || j >= ends.length) {
+				throw new IndexOutOfBoundsException("Index " + j / 2
+						+ ", size " + size());
+			}
+			final long start = j == 0 ? 0L : scaleEnd(j - 1);
+			return (int) Math.min(Integer.MAX_VALUE, scaleEnd(j) - start);
+		}
+
+		/**
+		 * @return scaled end time of the j-th duration, rounded half up
+		 */
+		private long scaleEnd(int j) {
+			return (ends[j] * factor + (ONE >> 1)) >> FRACTION_BITS;
+		}
+	}
+
+}
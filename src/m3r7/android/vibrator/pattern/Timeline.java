@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.pattern;
+
+/**
+ * Immutable sequence of segments, each made of a vibration duration followed
+ * by a silence duration. Timelines built from durations are packed into a
+ * single int array so reading them never boxes. Composed timelines, see
+ * {@link #concat(Timeline...)}, {@link #repeat(int)},
+ * {@link #interleave(Timeline)} and {@link #reverse()}, are views that read
+ * through to the timelines they are made of and copy nothing until
+ * {@link #toVibratable(long)} or {@link #toArray()} is called. So are the
+ * timelines returned by {@link #stretch(double)}, which scales through a
+ * {@link TempoTable}.
+ */
+public abstract class Timeline {
+
+	static final Timeline EMPTY = new PackedTimeline(new int[0]);
+
+	Timeline() {
+	}
+
+	/**
+	 * Copies the given (vibration, silence, vibration, silence, ...) array. A
+	 * trailing element without a silence counterpart is dropped.
+	 */
+	public static Timeline of(int[] arr) {
+		final int length = arr.length - arr.length % 2;
+		if (length == 0) {
+			return EMPTY;
+		}
+		final int[] durations = new int[length];
+		System.arraycopy(arr, 0, durations, 0, length);
+		return new PackedTimeline(durations);
+	}
+
+	/**
+	 * Takes ownership of the given array without copying it. Callers must not
+	 * modify the array afterwards and its length must be even.
+	 */
+	static Timeline wrap(int[] durations) {
+		return new PackedTimeline(durations);
+	}
+
+	/**
+	 * @return the segments of all parts, one part after the other
+	 */
+	public static Timeline concat(Timeline... parts) {
+		return TimelineViews.concat(parts);
+	}
+
+	public abstract int size();
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public abstract int getVibration(int index);
+
+	public abstract int getSilence(int index);
+
+	public long getTotalDuration() {
+		long total = 0L;
+		final int size = size();
+		for (int i = 0; i < size; i++) {
+			total += getVibration(i) + (long) getSilence(i);
+		}
+		return total;
+	}
+
+	/**
+	 * @return the array expected by {@code Vibrator.vibrate(long[], int)},
+	 *         i.e. waitTime followed by all durations of the timeline
+	 */
+	public long[] toVibratable(long waitTime) {
+		final long[] arr = new long[size() * 2 + 1];
+		toVibratable(waitTime, arr);
+		return arr;
+	}
+
+	/**
+	 * Like {@link #toVibratable(long)} but writes into buffer, so that a
+	 * buffer can be reused for several patterns.
+	 * 
+	 * @return number of elements written, i.e. 2 * {@link #size()} + 1
+	 * @throws IllegalArgumentException
+	 *             if buffer is too small
+	 */
+	public int toVibratable(long waitTime, long[] buffer) {
+		final int length = size() * 2 + 1;
+		if (buffer.length < length) {
+			throw new IllegalArgumentException("Buffer too small : "
+					+ buffer.length + " < " + length);
+		}
+		buffer[0] = waitTime;
+		read(0, buffer, 1, size());
+		return length;
+	}
+
+	/**
+	 * Copies the durations of up to count segments starting with segment
+	 * fromIndex into buffer, vibration before silence.
+	 * 
+	 * @return number of segments copied, less than count at the end of the
+	 *         timeline
+	 */
+	public int read(int fromIndex, long[] buffer, int offset, int count) {
+		final int end = (int) Math.min(size(), (long) fromIndex + count);
+		for (int i = fromIndex; i < end; i++) {
+			buffer[offset++] = getVibration(i);
+			buffer[offset++] = getSilence(i);
+		}
+		return Math.max(0, end - fromIndex);
+	}
+
+	public int[] toArray() {
+		final int size = size();
+		final int[] arr = new int[size * 2];
+		for (int i = 0; i < size; i++) {
+			arr[i * 2] = getVibration(i);
+			arr[i * 2 + 1] = getSilence(i);
+		}
+		return arr;
+	}
+
+	/**
+	 * @return what to play when this timeline is looped. A timeline repeating
+	 *         a motif loops the motif alone, without the incomplete
+	 *         repetition recorded at its end, so its vibratable form can be
+	 *         passed to {@code Vibrator.vibrate(long[], int)} with repeat
+	 *         index 1 instead of expanding every repetition.
+	 */
+	public Timeline getLoop() {
+		return this;
+	}
+
+	/**
+	 * @return this timeline played times times in a row
+	 */
+	public Timeline repeat(int times) {
+		return TimelineViews.repeat(this, times);
+	}
+
+	/**
+	 * @return the segments of this timeline and other taken in turns, followed
+	 *         by the rest of the longer one
+	 */
+	public Timeline interleave(Timeline other) {
+		return TimelineViews.interleave(this, other);
+	}
+
+	/**
+	 * @return the segments of this timeline in reverse order, each segment
+	 *         still starting with its vibration
+	 */
+	public Timeline reverse() {
+		return TimelineViews.reverse(this);
+	}
+
+	/**
+	 * Scales end times rather than durations, see {@link TempoTable}, so the
+	 * stretched total is the rounded total of this timeline times factor and
+	 * a repeating motif keeps repeating.
+	 * 
+	 * @return this timeline with every duration multiplied by factor
+	 * @throws IllegalArgumentException
+	 *             if factor is negative, not a number or too large
+	 */
+	public Timeline stretch(double factor) {
+		return new TempoTable(this).scale(factor);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof Timeline)) {
+			return false;
+		}
+		final Timeline other = (Timeline) o;
+		final int size = size();
+		if (other.size() != size) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (getVibration(i) != other.getVibration(i)
+					|| getSilence(i) != other.getSilence(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Same as {@link java.util.Arrays#hashCode(int[])} of {@link #toArray()}.
+	 */
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		final int size = size();
+		for (int i = 0; i < size; i++) {
+			hash = 31 * hash + getVibration(i);
+			hash = 31 * hash + getSilence(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * Growable buffer used to assemble a timeline segment by segment without
+	 * boxing.
+	 */
+	public static final class Builder {
+
+		private int[] buffer;
+		private int length;
+
+		public Builder() {
+			this(16);
+		}
+
+		public Builder(int expectedSegments) {
+			buffer = new int[Math.max(2, expectedSegments * 2)];
+		}
+
+		public Builder add(int vibration, int silence) {
+			if (length + 2 > buffer.length) {
+				final int[] grown = new int[buffer.length * 2];
+				System.arraycopy(buffer, 0, grown, 0, length);
+				buffer = grown;
+			}
+			buffer[length++] = vibration;
+			buffer[length++] = silence;
+			return this;
+		}
+
+		public int size() {
+			return length / 2;
+		}
+
+		public boolean isEmpty() {
+			return length == 0;
+		}
+
+		public void clear() {
+			length = 0;
+		}
+
+		public Timeline build() {
+			if (length == 0) {
+				return EMPTY;
+			}
+			final int[] durations = new int[length];
+			System.arraycopy(buffer, 0, durations, 0, length);
+			return new PackedTimeline(durations);
+		}
+	}
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.pattern;
+
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of a {@link Timeline}. Layout :
+ *
+ * <pre>
+ * format (1 byte) | segment count (varint) | durations (zigzag varints)
+ * </pre>
+ *
+ * Each duration is stored as the difference to the previous duration of the
+ * same kind (vibration or silence), so the regular rhythms we capture mostly
+ * encode to a single byte per duration. Timelines repeating a motif, see
+ * {@link PeriodDetector}, are stored as the motif, its repeat count and the
+ * tail :
+ *
+ * <pre>
+ * format (1 byte) | repeat count (varint) | motif segments | tail segments
+ * </pre>
+ *
+ * where both segment lists are laid out as segment count and durations above.
+ * Timelines made of runs of identical segments, see {@link RunLengthTimeline},
+ * store each run's segment once followed by the length of every run :
+ *
+ * <pre>
+ * format (1 byte) | run segments | run lengths (varints)
+ * </pre>
+ */
+public final class TimelineCodec {
+
+	private static final byte FORMAT_DELTA = 1;
+	private static final byte FORMAT_PERIODIC = 2;
+	private static final byte FORMAT_RUNS = 3;
+
+	private TimelineCodec() {
+	}
+
+	public static byte[] encode(Timeline timeline) {
+		final byte[] buffer;
+		int pos = 0;
+		if (timeline instanceof PeriodicTimeline) {
+			final PeriodicTimeline periodic = (PeriodicTimeline) timeline;
+			buffer = new byte[1 + 5 + maxLength(periodic.motif)
+					+ maxLength(periodic.tail)];
+			buffer[pos++] = FORMAT_PERIODIC;
+			pos = writeVarint(buffer, pos, periodic.count);
+			pos = writeSegments(buffer, pos, periodic.motif);
+			pos = writeSegments(buffer, pos, periodic.tail);
+		} else if (timeline instanceof RunLengthTimeline) {
+			final RunLengthTimeline runs = (RunLengthTimeline) timeline;
+			buffer = new byte[1 + maxLength(runs.runs) + runs.counts.length
+					* 5];
+			buffer[pos++] = FORMAT_RUNS;
+			pos = writeSegments(buffer, pos, runs.runs);
+			for (int count : runs.counts) {
+				pos = writeVarint(buffer, pos, count);
+			}
+		} else {
+			buffer = new byte[1 + maxLength(timeline)];
+			buffer[pos++] = FORMAT_DELTA;
+			pos = writeSegments(buffer, pos, timeline);
+		}
+		final byte[] encoded = new byte[pos];
+		System.arraycopy(buffer, 0, encoded, 0, pos);
+		return encoded;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if data is not a timeline produced by {@link #encode}
+	 */
+	public static Timeline decode(byte[] data) {
+		if (data == null || data.length == 0) {
+			throw new IllegalArgumentException("Unknown timeline format");
+		}
+		final int[] pos = { 1 };
+		final Timeline timeline;
+		switch (data[0]) {
+		case FORMAT_DELTA:
+			timeline = readSegments(data, pos);
+			break;
+		case FORMAT_PERIODIC:
+			final int count = readVarint(data, pos);
+			final Timeline motif = readSegments(data, pos);
+			final Timeline tail = readSegments(data, pos);
+			timeline = new PeriodicTimeline(motif, count, tail);
+			break;
+		case FORMAT_RUNS:
+			final Timeline runs = readSegments(data, pos);
+			final int[] counts = new int[runs.size()];
+			for (int r = 0; r < counts.length; r++) {
+				counts[r] = readVarint(data, pos);
+			}
+			timeline = new RunLengthTimeline(runs, counts);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown timeline format");
+		}
+		if (pos[0] != data.length) {
+			throw new IllegalArgumentException("Trailing timeline data");
+		}
+		return timeline;
+	}
+
+	public static long checksum(byte[] data) {
+		final CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return crc.getValue();
+	}
+
+	/**
+	 * @return worst case encoded length of the segment list : 5 bytes per
+	 *         varint
+	 */
+	private static int maxLength(Timeline timeline) {
+		return 5 + timeline.size() * 2 * 5;
+	}
+
+	private static int writeSegments(byte[] buffer, int pos, Timeline timeline) {
+		final int size = timeline.size();
+		pos = writeVarint(buffer, pos, size);
+		int prevVibration = 0;
+		int prevSilence = 0;
+		for (int i = 0; i < size; i++) {
+			final int vibration = timeline.getVibration(i);
+			final int silence = timeline.getSilence(i);
+			pos = writeVarint(buffer, pos, zigzag(vibration - prevVibration));
+			pos = writeVarint(buffer, pos, zigzag(silence - prevSilence));
+			prevVibration = vibration;
+			prevSilence = silence;
+		}
+		return pos;
+	}
+
+	private static Timeline readSegments(byte[] data, int[] pos) {
+		final int size = readVarint(data, pos);
+		if (size < 0 || size > data.length) {
+			throw new IllegalArgumentException("Corrupt segment count : "
+					+ size);
+		}
+		final int[] durations = new int[size * 2];
+		int prevVibration = 0;
+		int prevSilence = 0;
+		for (int i = 0; i < size; i++) {
+			prevVibration += unzigzag(readVarint(data, pos));
+			prevSilence += unzigzag(readVarint(data, pos));
+			durations[i * 2] = prevVibration;
+			durations[i * 2 + 1] = prevSilence;
+		}
+		return Timeline.wrap(durations);
+	}
+
+	private static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	private static int unzigzag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	private static int writeVarint(byte[] buffer, int pos, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[pos++] = (byte) value;
+		return pos;
+	}
+
+	private static int readVarint(byte[] data, int[] pos) {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			if (pos[0] >= data.length) {
+				throw new IllegalArgumentException("Truncated timeline data");
+			}
+			final byte b = data[pos[0]++];
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+}
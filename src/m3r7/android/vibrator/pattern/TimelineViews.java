@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.pattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Composed timelines. Each one reads the segments of the timelines it is
+ * made of on demand, so composing never copies durations.
+ */
+final class TimelineViews {
+
+	private TimelineViews() {
+	}
+
+	static Timeline concat(Timeline... parts) {
+		final List<Timeline> flattened = new ArrayList<Timeline>(parts.length);
+		for (Timeline part : parts) {
+			if (part instanceof Concat) {
+				for (Timeline nested : ((Concat) part).parts) {
+					flattened.add(nested);
+				}
+			} else if (!part.isEmpty()) {
+				flattened.add(part);
+			}
+		}
+		switch (flattened.size()) {
+		case 0:
+			return Timeline.EMPTY;
+		case 1:
+			return flattened.get(0);
+		default:
+			return new Concat(flattened.toArray(new Timeline[flattened
+					.size()]));
+		}
+	}
+
+	static Timeline repeat(Timeline base, int times) {
+		if (times < 0) {
+			throw new IllegalArgumentException("Negative repeat count : "
+					+ times);
+		}
+		if (times == 0 || base.isEmpty()) {
+			return Timeline.EMPTY;
+		}
+		if (times == 1) {
+			return base;
+		}
+		return new Repeat(base, times);
+	}
+
+	static Timeline interleave(Timeline first, Timeline second) {
+		if (first.isEmpty()) {
+			return second;
+		}
+		if (second.isEmpty()) {
+			return first;
+		}
+		return new Interleave(first, second);
+	}
+
+	static Timeline reverse(Timeline base) {
+		if (base instanceof Reverse) {
+			return ((Reverse) base).base;
+		}
+		if (base.size() < 2) {
+			return base;
+		}
+		return new Reverse(base);
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the durations of that many segments do not fit into an
+	 *             array
+	 */
+	private static int checkSize(long segments) {
+		if (segments > Integer.MAX_VALUE / 2) {
+			throw new IllegalArgumentException("Timeline too long : "
+					+ segments + " segments");
+		}
+		return (int) segments;
+	}
+
+	private static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + ", size "
+					+ size);
+		}
+	}
+
+	private static final class Concat extends Timeline {
+		final Timeline[] parts;
+		// starts[i] is the index of the first segment of parts[i]
+		private final int[] starts;
+		private final int size;
+		// part of the last access, segments are mostly read in order
+		private int lastPart;
+
+		Concat(Timeline[] parts) {
+			this.parts = parts;
+			starts = new int[parts.length];
+			long total = 0L;
+			for (int i = 0; i < parts.length; i++) {
+				starts[i] = checkSize(total);
+				total += parts[i].size();
+			}
+			size = checkSize(total);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int getVibration(int index) {
+			final int part = findPart(index);
+			return parts[part].getVibration(index - starts[part]);
+		}
+
+		@Override
+		public int getSilence(int index) {
+			final int part = findPart(index);
+			return parts[part].getSilence(index - starts[part]);
+		}
+
+		@Override
+		public long getTotalDuration() {
+			long total = 0L;
+			for (Timeline part : parts) {
+				total += part.getTotalDuration();
+			}
+			return total;
+		}
+
+		@Override
+		public int read(int fromIndex, long[] buffer, int offset, int count) {
+			final int end = (int) Math.min(size, (long) fromIndex + count);
+			int index = fromIndex;
+			while (index < end) {
+				final int part = findPart(index);
+				final int read = parts[part].read(index - starts[part],
+						buffer, offset, end - index);
+				index += read;
+				offset += read * 2;
+			}
+			return Math.max(0, end - fromIndex);
+		}
+
+		private int findPart(int index) {
+			checkIndex(index, size);
+			int part = lastPart;
+			if (!contains(part, index)) {
+				// parts are never empty, so starts has no duplicates
+				final int found = Arrays.binarySearch(starts, index);
+				part = found >= 0 ? found : -found - 2;
+				lastPart = part;
+			}
+			return part;
+		}
+
+		private boolean contains(int part, int index) {
+			return index >= starts[part]
+					&& (part + 1 == parts.length || index < starts[part + 1]);
+		}
+	}
+
+	private static final class Repeat extends Timeline {
+		private final Timeline base;
+		private final int times;
+		private final int size;
+
+		Repeat(Timeline base, int times) {
+			this.base = base;
+			this.times = times;
+			size = checkSize((long) times * base.size());
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int getVibration(int index) {
+			checkIndex(index, size);
+			return base.getVibration(index % base.size());
+		}
+
+		@Override
+		public int getSilence(int index) {
+			checkIndex(index, size);
+			return base.getSilence(index % base.size());
+		}
+
+		@Override
+		public long getTotalDuration() {
+			return base.getTotalDuration() * times;
+		}
+
+		@Override
+		public Timeline getLoop() {
+			return base.getLoop();
+		}
+	}
+
+	private static final class Interleave extends Timeline {
+		private final Timeline first;
+		private final Timeline second;
+		// segments taken in turns, before the rest of the longer timeline
+		private final int shared;
+		private final Timeline longer;
+		private final int size;
+
+		Interleave(Timeline first, Timeline second) {
+			this.first = first;
+			this.second = second;
+			shared = Math.min(first.size(), second.size());
+			longer = first.size() >= second.size() ? first : second;
+			size = checkSize(first.size() + (long) second.size());
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int getVibration(int index) {
+			checkIndex(index, size);
+			if (index < shared * 2) {
+				return (index % 2 == 0 ? first : second)
+						.getVibration(index / 2);
+			}
+			return longer.getVibration(index - shared);
+		}
+
+		@Override
+		public int getSilence(int index) {
+			checkIndex(index, size);
+			if (index < shared * 2) {
+				return (index % 2 == 0 ? first : second).getSilence(index / 2);
+			}
+			return longer.getSilence(index - shared);
+		}
+
+		@Override
+		public long getTotalDuration() {
+			return first.getTotalDuration() + second.getTotalDuration();
+		}
+	}
+
+	private static final class Reverse extends Timeline {
+		final Timeline base;
+		private final int lastIndex;
+
+		Reverse(Timeline base) {
+			this.base = base;
+			lastIndex = base.size() - 1;
+		}
+
+		@Override
+		public int size() {
+			return lastIndex + 1;
+		}
+
+		@Override
+		public int getVibration(int index) {
+			checkIndex(index, lastIndex + 1);
+			return base.getVibration(lastIndex - index);
+		}
+
+		@Override
+		public int getSilence(int index) {
+			checkIndex(index, lastIndex + 1);
+			return base.getSilence(lastIndex - index);
+		}
+
+		@Override
+		public long getTotalDuration() {
+			return base.getTotalDuration();
+		}
+	}
+
+}
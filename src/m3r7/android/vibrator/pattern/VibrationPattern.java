@@ -16,99 +16,99 @@
 
 package m3r7.android.vibrator.pattern;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import m3r7.android.vibrator.IVibrationPattern;
-import m3r7.android.vibrator.util.VibratorConstants;
-import android.util.Pair;
 
 class VibrationPattern implements IVibrationPattern {
 
 	private final String name;
-	private final List<Pair<Integer, Integer>> pattern;
+	private final Timeline timeline;
+	/*
+	 * legal modifier interval, i.e. scale(m) keeps every segment within
+	 * [MIN_LENGTH, MAX_LENGTH] for minModifier <= m <= maxModifier
+	 */
+	private final int minModifier;
+	private final int maxModifier;
+	private final boolean hasBothStates;
+	private volatile TempoTable tempoTable;
 
-	private static final int MIN_LENGTH = VibratorConstants.MILLIS_IN_SECOND / 20;
-	private static final int MAX_LENGTH = 10 * VibratorConstants.MILLIS_IN_SECOND;
+	private static final int MILLIS_IN_SECOND = 1000;
+	static final int MIN_LENGTH = MILLIS_IN_SECOND / 20;
+	private static final int MAX_LENGTH = 10 * MILLIS_IN_SECOND;
 	private static final double SCALER = 0.25;
 
-	VibrationPattern(String name, List<Pair<Integer, Integer>> pattern) {
+	VibrationPattern(String name, Timeline timeline) {
 		this.name = name;
-		this.pattern = pattern;
+		this.timeline = timeline;
+		int shortest = Integer.MAX_VALUE;
+		int longest = 0;
+		long vibrationTotal = 0L;
+		long silenceTotal = 0L;
+		final int lastIndex = timeline.size() - 1;
+		for (int i = 0; i <= lastIndex; i++) {
+			final int vibration = timeline.getVibration(i);
+			final int silence = timeline.getSilence(i);
+			vibrationTotal += vibration;
+			silenceTotal += silence;
+			shortest = Math.min(shortest, vibration);
+			longest = Math.max(longest, Math.max(vibration, silence));
+			/*
+			 * 0 at last pair's 'second' must be ignored when deciding
+			 * scalability
+			 */
+			if (!(i == lastIndex && silence == 0)) {
+				shortest = Math.min(shortest, silence);
+			}
+		}
+		this.hasBothStates = vibrationTotal > 0 && silenceTotal > 0;
+		this.minModifier = getMinModifier(shortest);
+		this.maxModifier = getMaxModifier(longest);
 	}
 
+	/**
+	 * Multiplies every duration by 1 + modifier / 4 through the
+	 * {@link TempoTable}, so that rounding errors do not add up over the
+	 * timeline.
+	 */
 	@Override
 	public IVibrationPattern scale(int modifier) {
 		if (modifier == 0) {
 			return this;
 		}
-		List<Pair<Integer, Integer>> scaled = new ArrayList<Pair<Integer, Integer>>();
-		final double scalingVal = SCALER * modifier;
-		for (Pair<Integer, Integer> p : pattern) {
-			final int newVibDuration = getScaledDuration(p.first, scalingVal);
-			final int newSilenceDuration = getScaledDuration(p.second,
-					scalingVal);
-			scaled.add(new Pair<Integer, Integer>(newVibDuration,
-					newSilenceDuration));
-		}
-		return new VibrationPattern(name, scaled);
+		return new VibrationPattern(name, getTempoTable().scale(
+				getFactor(modifier)));
 	}
 
 	@Override
-	public Pair<Boolean, Boolean> isScalable(int modifier) {
-		final double decScalingVal = SCALER * (modifier - 1);
-		final double incScalingVal = SCALER * (modifier + 1);
-		boolean allowNextDecrease = true;
-		boolean allowNextIncrease = true;
-		int vibrationTotal = 0;
-		int silenceTotal = 0;
-		final int lastIndex = pattern.size() - 1;
-		for (int i = 0; i < lastIndex + 1; i++) {
-			final Pair<Integer, Integer> p = pattern.get(i);
-			vibrationTotal += p.first;
-			silenceTotal += p.second;
-			if (allowNextDecrease) {
-				final int nextVibDuration = getScaledDuration(p.first,
-						decScalingVal);
-				final int nextSilenceDuration = getScaledDuration(p.second,
-						decScalingVal);
-				/*
-				 * 0 at last pair's 'second' must be ignored when deciding
-				 * scalability
-				 */
-				final boolean ignore = (i == lastIndex && p.second == 0);
-				if (nextVibDuration < MIN_LENGTH
-						|| (!ignore && nextSilenceDuration < MIN_LENGTH)) {
-					allowNextDecrease = false;
-				}
-			}
-			if (allowNextIncrease) {
-				final int nextVibDuration = getScaledDuration(p.first,
-						incScalingVal);
-				final int nextSilenceDuration = getScaledDuration(p.second,
-						incScalingVal);
-				if (nextVibDuration > MAX_LENGTH
-						|| nextSilenceDuration > MAX_LENGTH) {
-					allowNextIncrease = false;
-				}
-			}
+	public Timeline getTempoVariant(double factor) {
+		return getTempoTable().getVariant(factor);
+	}
+
+	private TempoTable getTempoTable() {
+		TempoTable table = tempoTable;
+		if (table == null) {
+			table = new TempoTable(timeline);
+			tempoTable = table;
 		}
-		if (vibrationTotal == 0 || silenceTotal == 0) {
-			return new Pair<Boolean, Boolean>(false, false);
+		return table;
+	}
+
+	@Override
+	public Scalability isScalable(int modifier) {
+		if (!hasBothStates) {
+			return Scalability.NONE;
 		}
-		return new Pair<Boolean, Boolean>(allowNextDecrease, allowNextIncrease);
+		return Scalability.of(modifier > minModifier,
+				modifier < maxModifier);
 	}
 
 	@Override
 	public long[] getVibratable(long waitTime) {
-		long[] arr = new long[pattern.size() * 2 + 1];
-		int arrIndex = 0;
-		arr[arrIndex++] = waitTime;
-		for (Pair<Integer, Integer> pair : pattern) {
-			arr[arrIndex++] = pair.first.longValue();
-			arr[arrIndex++] = pair.second.longValue();
-		}
-		return arr;
+		return timeline.toVibratable(waitTime);
+	}
+
+	@Override
+	public int getVibratable(long waitTime, long[] buffer) {
+		return timeline.toVibratable(waitTime, buffer);
 	}
 
 	@Override
@@ -117,17 +117,67 @@ class VibrationPattern implements IVibrationPattern {
 	}
 
 	@Override
-	public List<Pair<Integer, Integer>> getPattern() {
-		final List<Pair<Integer, Integer>> pairList = new ArrayList<Pair<Integer, Integer>>();
-		for (Pair<Integer, Integer> p : pattern) {
-			pairList.add(new Pair<Integer, Integer>(new Integer(p.first),
-					new Integer(p.second)));
+	public Timeline getTimeline() {
+		return timeline;
+	}
+
+	@Override
+	public int getSegmentCount() {
+		return timeline.size();
+	}
+
+	@Override
+	public long getTotalDuration() {
+		return timeline.getTotalDuration();
+	}
+
+	/**
+	 * @return 16.16 fixed-point factor of the given modifier, 0 for modifiers
+	 *         that would make it negative
+	 */
+	private static int getFactor(int modifier) {
+		return TempoTable.toFixedPoint(Math.max(0d, 1 + SCALER * modifier));
+	}
+
+	/**
+	 * @return the smallest modifier that does not shrink the shortest segment
+	 *         below MIN_LENGTH
+	 */
+	private static int getMinModifier(int shortest) {
+		if (shortest <= 0 || shortest == Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
+		}
+		/*
+		 * start from the analytical bound and correct for rounding : scaled
+		 * durations are differences of rounded end times, so they are never
+		 * below the exact product rounded down, nor above it rounded up
+		 */
+		int m = (int) Math.ceil((MIN_LENGTH / (double) shortest - 1) / SCALER);
+		while (TempoTable.scaleDown(shortest, getFactor(m - 1)) >= MIN_LENGTH) {
+			m--;
+		}
+		while (TempoTable.scaleDown(shortest, getFactor(m)) < MIN_LENGTH) {
+			m++;
 		}
-		return pairList;
+		return m;
 	}
 
-	private static int getScaledDuration(int oldDuration, double scalingVal) {
-		return Math.max(0, (int) (oldDuration * (1 + scalingVal)));
+	/**
+	 * @return the largest modifier that does not stretch the longest segment
+	 *         beyond MAX_LENGTH
+	 */
+	private static int getMaxModifier(int longest) {
+		if (longest <= 0) {
+			return Integer.MAX_VALUE;
+		}
+		int m = (int) Math.floor((MAX_LENGTH / (double) longest - 1) / SCALER);
+		while (TempoTable.scaleUp(longest, getFactor(m + 1)) <= MAX_LENGTH) {
+			m++;
+		}
+		while (TempoTable.scaleUp(longest, getFactor(m)) > MAX_LENGTH) {
+			m--;
+		}
+		return m;
 	}
 
 }
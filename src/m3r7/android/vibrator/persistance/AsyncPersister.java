@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.persistance;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import m3r7.android.vibrator.IPersister;
+import m3r7.android.vibrator.IVibrationPattern;
+import m3r7.android.vibrator.pattern.PatternMaker;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * Runs every call of a {@link SQLitePersister} on a single background thread,
+ * so that activity lifecycle callbacks never wait for the disk.
+ * <p>
+ * Writes are queued and return immediately. Consecutive
+ * {@link #updatePatterns(Collection, Collection)} calls that are still waiting
+ * in the queue are merged into one transaction. Synchronous reads are queued
+ * behind pending writes and block the caller until they are done, asynchronous
+ * ones deliver their result on the main looper.
+ */
+class AsyncPersister implements IPersister {
+
+	private static final String THREAD_NAME = "VibratorPersister";
+
+	private final Context mContext;
+	private final ExecutorService mExecutor;
+	private final Handler mMainHandler;
+	private final Object lock = new Object();
+
+	private volatile Thread mWorkerThread;
+	// accessed on the worker thread only
+	private IPersister mDelegate;
+	// last queued batch that has not started yet, guarded by lock
+	private Batch pendingBatch;
+
+	AsyncPersister(Context context) {
+		mContext = context.getApplicationContext();
+		mMainHandler = new Handler(Looper.getMainLooper());
+		mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						Process
+								.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+						r.run();
+					}
+				}, THREAD_NAME);
+				mWorkerThread = thread;
+				return thread;
+			}
+		});
+	}
+
+	@Override
+	public void savePatterns(final Map<String, IVibrationPattern> patterns) {
+		final Map<String, IVibrationPattern> copy = new HashMap<String, IVibrationPattern>(
+				patterns);
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				getDelegate().savePatterns(copy);
+			}
+		});
+	}
+
+	@Override
+	public void deletePatterns() {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				getDelegate().deletePatterns();
+			}
+		});
+	}
+
+	@Override
+	public void upsertPattern(IVibrationPattern pattern) {
+		updatePatterns(Collections.singleton(pattern),
+				Collections.<String> emptySet());
+	}
+
+	@Override
+	public void deletePattern(String name) {
+		updatePatterns(Collections.<IVibrationPattern> emptySet(),
+				Collections.singleton(name));
+	}
+
+	@Override
+	public void updatePatterns(Collection<IVibrationPattern> upserted,
+			Collection<String> deleted) {
+		synchronized (lock) {
+			if (pendingBatch == null) {
+				final Batch batch = new Batch();
+				pendingBatch = batch;
+				mExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						synchronized (lock) {
+							if (pendingBatch == batch) {
+								pendingBatch = null;
+							}
+						}
+						getDelegate().updatePatterns(batch.upserted.values(),
+								batch.deleted);
+					}
+				});
+			}
+			pendingBatch.merge(upserted, deleted);
+		}
+	}
+
+	@Override
+	public Map<String, IVibrationPattern> getPatternsMap() {
+		return call(new Callable<Map<String, IVibrationPattern>>() {
+			@Override
+			public Map<String, IVibrationPattern> call() {
+				return getDelegate().getPatternsMap();
+			}
+		});
+	}
+
+	@Override
+	public Map<String, IVibrationPattern> getPatternIndex() {
+		return getPatternIndex(this);
+	}
+
+	/**
+	 * @param owner
+	 *            persister the patterns of the index load their timelines
+	 *            through
+	 */
+	Map<String, IVibrationPattern> getPatternIndex(final IPersister owner) {
+		return call(new Callable<Map<String, IVibrationPattern>>() {
+			@Override
+			public Map<String, IVibrationPattern> call() {
+				return readIndex(owner);
+			}
+		});
+	}
+
+	@Override
+	public void loadPatternIndex(
+			final Callback<Map<String, IVibrationPattern>> callback) {
+		loadPatternIndex(callback, this);
+	}
+
+	/**
+	 * @param owner
+	 *            persister the patterns of the index load their timelines
+	 *            through
+	 */
+	void loadPatternIndex(
+			final Callback<Map<String, IVibrationPattern>> callback,
+			final IPersister owner) {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				final Map<String, IVibrationPattern> index = readIndex(owner);
+				mMainHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						callback.onResult(index);
+					}
+				});
+			}
+		});
+	}
+
+	@Override
+	public IVibrationPattern loadPattern(final String name) {
+		return call(new Callable<IVibrationPattern>() {
+			@Override
+			public IVibrationPattern call() {
+				return getDelegate().loadPattern(name);
+			}
+		});
+	}
+
+	@Override
+	public void loadPattern(final String name,
+			final Callback<IVibrationPattern> callback) {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				final IVibrationPattern pattern = getDelegate().loadPattern(
+						name);
+				mMainHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						callback.onResult(pattern);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Closes the database after all queued operations are done. No calls may
+	 * be made afterwards.
+	 */
+	@Override
+	public void closeDB() {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				if (mDelegate != null) {
+					mDelegate.closeDB();
+					mDelegate = null;
+				}
+			}
+		});
+		mExecutor.shutdown();
+	}
+
+	private IPersister getDelegate() {
+		if (mDelegate == null) {
+			mDelegate = new SQLitePersister(mContext);
+		}
+		return mDelegate;
+	}
+
+	/**
+	 * Lazy patterns of the index load their timelines through owner, which
+	 * runs them on this persister, so those reads are ordered after pending
+	 * writes as well.
+	 */
+	private Map<String, IVibrationPattern> readIndex(IPersister owner) {
+		final Map<String, IVibrationPattern> stored = getDelegate()
+				.getPatternIndex();
+		final Map<String, IVibrationPattern> index = new HashMap<String, IVibrationPattern>(
+				stored.size() * 2);
+		for (IVibrationPattern pattern : stored.values()) {
+			index.put(pattern.getName(), PatternMaker.makeLazy(pattern
+					.getName(), pattern.getSegmentCount(), pattern
+					.getTotalDuration(), owner));
+		}
+		return index;
+	}
+
+	private void execute(Runnable task) {
+		synchronized (lock) {
+			// later updates must not be merged into a batch queued before task
+			pendingBatch = null;
+			mExecutor.execute(task);
+		}
+	}
+
+	private <T> T call(Callable<T> task) {
+		if (Thread.currentThread() == mWorkerThread) {
+			try {
+				return task.call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		final Future<T> future;
+		synchronized (lock) {
+			pendingBatch = null;
+			future = mExecutor.submit(task);
+		}
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Net effect of several updatePatterns calls, last call wins per name.
+	 */
+	private static class Batch {
+		final Map<String, IVibrationPattern> upserted = new LinkedHashMap<String, IVibrationPattern>();
+		final Set<String> deleted = new HashSet<String>();
+
+		void merge(Collection<IVibrationPattern> upserts,
+				Collection<String> deletions) {
+			for (String name : deletions) {
+				upserted.remove(name);
+				deleted.add(name);
+			}
+			for (IVibrationPattern pattern : upserts) {
+				deleted.remove(pattern.getName());
+				upserted.put(pattern.getName(), pattern);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.persistance;
+
+/**
+ * Schema of the pattern store and the statements run against it, one row per
+ * pattern holding its {@link m3r7.android.vibrator.pattern.TimelineCodec}
+ * encoded timeline. Plain SQL without platform classes, so that desktop
+ * tools can open the same table.
+ */
+final class PatternTable {
+
+	static final int VERSION = 3;
+	static final String NAME = "PATTERN_TIMELINES";
+	static final String NAME_COLUMN = "NAME";
+	static final String SEGMENT_COUNT_COLUMN = "SEGMENT_COUNT";
+	static final String TOTAL_DURATION_COLUMN = "TOTAL_DURATION";
+	static final String CHECKSUM_COLUMN = "CHECKSUM";
+	static final String TIMELINE_COLUMN = "TIMELINE";
+
+	static final String CREATE = "create table if not exists " + NAME + " ("
+			+ NAME_COLUMN + " text primary key on conflict replace, "
+			+ SEGMENT_COUNT_COLUMN + " integer, " + TOTAL_DURATION_COLUMN
+			+ " integer, " + CHECKSUM_COLUMN + " integer, " + TIMELINE_COLUMN
+			+ " blob)";
+	static final String INSERT_ROW = "insert or replace into " + NAME + " ("
+			+ NAME_COLUMN + ", " + SEGMENT_COUNT_COLUMN + ", "
+			+ TOTAL_DURATION_COLUMN + ", " + CHECKSUM_COLUMN + ", "
+			+ TIMELINE_COLUMN + ") values (?, ?, ?, ?, ?)";
+	static final String DELETE_BY_NAME = "delete from " + NAME + " where "
+			+ NAME_COLUMN + " = ?";
+	static final String DELETE_ALL = "delete from " + NAME;
+	static final String SELECT_ALL = "select " + NAME_COLUMN + ", "
+			+ CHECKSUM_COLUMN + ", " + TIMELINE_COLUMN + " from " + NAME;
+	static final String SELECT_INDEX = "select " + NAME_COLUMN + ", "
+			+ SEGMENT_COUNT_COLUMN + ", " + TOTAL_DURATION_COLUMN + " from "
+			+ NAME;
+	static final String SELECT_BY_NAME = "select " + CHECKSUM_COLUMN + ", "
+			+ TIMELINE_COLUMN + " from " + NAME + " where " + NAME_COLUMN
+			+ " = ?";
+
+	private PatternTable() {
+	}
+
+}
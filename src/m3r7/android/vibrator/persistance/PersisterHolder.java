@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.persistance;
+
+import java.util.Collection;
+import java.util.Map;
+
+import m3r7.android.vibrator.IPersister;
+import m3r7.android.vibrator.IVibrationPattern;
+import android.content.Context;
+
+/**
+ * Reference counted owner of the single {@link AsyncPersister}. Every
+ * {@link #acquire(Context)} hands out a {@link Handle} whose closeDB()
+ * releases one reference; the database is closed when the last one goes.
+ */
+final class PersisterHolder {
+
+	// guarded by PersisterHolder.class
+	private static AsyncPersister shared;
+	private static int refCount;
+
+	private PersisterHolder() {
+	}
+
+	static synchronized IPersister acquire(Context context) {
+		if (shared == null) {
+			shared = new AsyncPersister(context);
+		}
+		refCount++;
+		return new Handle(shared);
+	}
+
+	private static synchronized void release(AsyncPersister persister) {
+		if (persister != shared) {
+			return;
+		}
+		if (--refCount == 0) {
+			shared.closeDB();
+			shared = null;
+		}
+	}
+
+	private static class Handle implements IPersister {
+
+		private final AsyncPersister persister;
+		private volatile boolean released;
+
+		Handle(AsyncPersister persister) {
+			this.persister = persister;
+		}
+
+		private AsyncPersister get() {
+			if (released) {
+				throw new IllegalStateException("Persister already released");
+			}
+			return persister;
+		}
+
+		@Override
+		public void savePatterns(Map<String, IVibrationPattern> patterns) {
+			get().savePatterns(patterns);
+		}
+
+		@Override
+		public void deletePatterns() {
+			get().deletePatterns();
+		}
+
+		@Override
+		public void upsertPattern(IVibrationPattern pattern) {
+			get().upsertPattern(pattern);
+		}
+
+		@Override
+		public void deletePattern(String name) {
+			get().deletePattern(name);
+		}
+
+		@Override
+		public void updatePatterns(Collection<IVibrationPattern> upserted,
+				Collection<String> deleted) {
+			get().updatePatterns(upserted, deleted);
+		}
+
+		@Override
+		public Map<String, IVibrationPattern> getPatternsMap() {
+			return get().getPatternsMap();
+		}
+
+		/**
+		 * The patterns of the index load their timelines through this handle,
+		 * so they cannot be read once it is released.
+		 */
+		@Override
+		public Map<String, IVibrationPattern> getPatternIndex() {
+			return get().getPatternIndex(this);
+		}
+
+		@Override
+		public IVibrationPattern loadPattern(String name) {
+			return get().loadPattern(name);
+		}
+
+		@Override
+		public void loadPattern(String name,
+				Callback<IVibrationPattern> callback) {
+			get().loadPattern(name, callback);
+		}
+
+		@Override
+		public void loadPatternIndex(
+				Callback<Map<String, IVibrationPattern>> callback) {
+			get().loadPatternIndex(callback, this);
+		}
+
+		@Override
+		public void closeDB() {
+			synchronized (this) {
+				if (released) {
+					return;
+				}
+				released = true;
+			}
+			release(persister);
+		}
+	}
+
+}
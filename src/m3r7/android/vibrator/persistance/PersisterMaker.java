@@ -20,7 +20,11 @@ import m3r7.android.vibrator.IPersister;
 import android.content.Context;
 
 public class PersisterMaker {
+	/**
+	 * @return a handle to the shared persister; callers must call
+	 *         {@link IPersister#closeDB()} on it exactly once when done
+	 */
 	public static IPersister make(Context context) {
-		return SQLitePersister.Instance(context);
+		return PersisterHolder.acquire(context);
 	}
 }
@@ -18,49 +18,54 @@ package m3r7.android.vibrator.persistance;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import m3r7.android.vibrator.IPersister;
 import m3r7.android.vibrator.IVibrationPattern;
+import m3r7.android.vibrator.pattern.PatternCompactor;
 import m3r7.android.vibrator.pattern.PatternMaker;
+import m3r7.android.vibrator.pattern.Timeline;
+import m3r7.android.vibrator.pattern.TimelineCodec;
 import m3r7.android.vibrator.util.VibratorUtility;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.util.Pair;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
 
 class SQLitePersister implements IPersister {
 
+	private static final String TAG = "SQLitePersister";
+
 	private static final String DATABASE_NAME = "VIBRATOR_DB";
-	private static final int DATABASE_VERSION = 1;
-	private static final String TABLE_NAME = "PATTERNS";
-	private static final String NAME_COLUMN = "NAME";
-	private static final String PAIR_NO_COLUMN = "PAIR_NO";
-	private static final String UPTIME_COLUMN = "UPTIME";
-	private static final String DOWNTIME_COLUMN = "DOWNTIME";
+
+	/*
+	 * version 1 schema : one row per (NAME, PAIR_NO), only read when upgrading
+	 */
+	private static final String LEGACY_TABLE_NAME = "PATTERNS";
+	private static final String LEGACY_NAME_COLUMN = "NAME";
+	private static final String LEGACY_PAIR_NO_COLUMN = "PAIR_NO";
+	private static final String LEGACY_UPTIME_COLUMN = "UPTIME";
+	private static final String LEGACY_DOWNTIME_COLUMN = "DOWNTIME";
 
 	private final Context mContext;
 	private SQLiteDatabase mVibratorDB;
+	private SQLiteStatement mInsertRow;
+	private SQLiteStatement mDeleteByName;
 
-	private static IPersister instance;
-
-	private SQLitePersister(Context context) {
+	/**
+	 * Opens the database; not thread-safe, callers must confine an instance
+	 * to a single thread (see {@link AsyncPersister}).
+	 */
+	SQLitePersister(Context context) {
 		mContext = context;
 		final VibratorOpenHelper vibratorOpenHelper = new VibratorOpenHelper();
 		mVibratorDB = vibratorOpenHelper.getWritableDatabase();
 	}
 
-	static IPersister Instance(Context context) {
-		if (instance == null) {
-			instance = new SQLitePersister(context);
-		}
-		return instance;
-	}
-
 	@Override
 	public void savePatterns(Map<String, IVibrationPattern> map) {
 		savePatterns(map.values());
@@ -76,42 +81,238 @@ class SQLitePersister implements IPersister {
 		return patternsMap;
 	}
 
+	@Override
+	public Map<String, IVibrationPattern> getPatternIndex() {
+		Cursor c = mVibratorDB.rawQuery(PatternTable.SELECT_INDEX, null);
+		Map<String, IVibrationPattern> index = new HashMap<String, IVibrationPattern>();
+		if (c.moveToFirst()) {
+			final int indexName = c
+					.getColumnIndexOrThrow(PatternTable.NAME_COLUMN);
+			final int indexSegmentCount = c
+					.getColumnIndexOrThrow(PatternTable.SEGMENT_COUNT_COLUMN);
+			final int indexTotalDuration = c
+					.getColumnIndexOrThrow(PatternTable.TOTAL_DURATION_COLUMN);
+			do {
+				final String name = c.getString(indexName);
+				index.put(name, PatternMaker.makeLazy(name, c
+						.getInt(indexSegmentCount), c
+						.getLong(indexTotalDuration), this));
+			} while (c.moveToNext());
+		}
+		if (c != null && !c.isClosed()) {
+			c.close();
+			c = null;
+		}
+		return index;
+	}
+
+	@Override
+	public void loadPatternIndex(
+			Callback<Map<String, IVibrationPattern>> callback) {
+		callback.onResult(getPatternIndex());
+	}
+
+	@Override
+	public IVibrationPattern loadPattern(String name) {
+		Cursor c = mVibratorDB.rawQuery(PatternTable.SELECT_BY_NAME,
+				new String[] { name });
+		IVibrationPattern pattern = null;
+		if (c.moveToFirst()) {
+			final int indexChecksum = c
+					.getColumnIndexOrThrow(PatternTable.CHECKSUM_COLUMN);
+			final int indexTimeline = c
+					.getColumnIndexOrThrow(PatternTable.TIMELINE_COLUMN);
+			final Timeline timeline = decode(name, c.getBlob(indexTimeline),
+					c.getLong(indexChecksum));
+			if (timeline != null) {
+				pattern = PatternMaker.make(name, timeline);
+			}
+		}
+		if (c != null && !c.isClosed()) {
+			c.close();
+			c = null;
+		}
+		return pattern;
+	}
+
+	@Override
+	public void loadPattern(String name, Callback<IVibrationPattern> callback) {
+		callback.onResult(loadPattern(name));
+	}
+
 	@Override
 	public void deletePatterns() {
-		mVibratorDB.delete(TABLE_NAME, null, null);
+		mVibratorDB.execSQL(PatternTable.DELETE_ALL);
+	}
+
+	@Override
+	public void upsertPattern(IVibrationPattern pattern) {
+		updatePatterns(Collections.singleton(pattern), Collections
+				.<String> emptySet());
+	}
+
+	@Override
+	public void deletePattern(String name) {
+		updatePatterns(Collections.<IVibrationPattern> emptySet(),
+				Collections.singleton(name));
+	}
+
+	@Override
+	public void updatePatterns(Collection<IVibrationPattern> upserted,
+			Collection<String> deleted) {
+		if (upserted.isEmpty() && deleted.isEmpty()) {
+			return;
+		}
+		final SQLiteStatement deleteByName = getDeleteByNameStatement();
+		final SQLiteStatement insertRow = getInsertRowStatement();
+		mVibratorDB.beginTransaction();
+		try {
+			for (String name : deleted) {
+				deleteByName.bindString(1, name);
+				deleteByName.execute();
+			}
+			for (IVibrationPattern pattern : upserted) {
+				insertPattern(pattern, insertRow);
+			}
+			mVibratorDB.setTransactionSuccessful();
+		} finally {
+			mVibratorDB.endTransaction();
+		}
 	}
 
 	@Override
 	public void closeDB() {
+		if (mInsertRow != null) {
+			mInsertRow.close();
+			mInsertRow = null;
+		}
+		if (mDeleteByName != null) {
+			mDeleteByName.close();
+			mDeleteByName = null;
+		}
 		if (mVibratorDB != null) {
 			mVibratorDB.close();
 			mVibratorDB = null;
 		}
-		instance = null;
 	}
 
 	public void savePatterns(Collection<IVibrationPattern> collection) {
-		for (IVibrationPattern pattern : collection) {
-			final String patternName = pattern.getName();
-			final List<Pair<Integer, Integer>> pairs = pattern.getPattern();
-			int pairNo = 1;
-			for (Pair<Integer, Integer> pair : pairs) {
-				insertRow(patternName, pairNo++, pair.first, pair.second,
-						mVibratorDB);
+		final SQLiteStatement insertRow = getInsertRowStatement();
+		mVibratorDB.beginTransaction();
+		try {
+			for (IVibrationPattern pattern : collection) {
+				insertPattern(pattern, insertRow);
 			}
+			mVibratorDB.setTransactionSuccessful();
+		} finally {
+			mVibratorDB.endTransaction();
 		}
 	}
 
 	public Collection<IVibrationPattern> getPatterns() {
-		final String orderBy = NAME_COLUMN + " asc, " + PAIR_NO_COLUMN + " asc";
-		Cursor c = mVibratorDB.query(TABLE_NAME, null, null, null, null, null,
+		return readPatterns(mVibratorDB);
+	}
+
+	private static Collection<IVibrationPattern> readPatterns(
+			SQLiteDatabase db) {
+		Cursor c = db.rawQuery(PatternTable.SELECT_ALL, null);
+		Collection<IVibrationPattern> patternList = new ArrayList<IVibrationPattern>();
+		if (c.moveToFirst()) {
+			final int indexName = c
+					.getColumnIndexOrThrow(PatternTable.NAME_COLUMN);
+			final int indexChecksum = c
+					.getColumnIndexOrThrow(PatternTable.CHECKSUM_COLUMN);
+			final int indexTimeline = c
+					.getColumnIndexOrThrow(PatternTable.TIMELINE_COLUMN);
+			do {
+				final String name = c.getString(indexName);
+				final Timeline timeline = decode(name, c.getBlob(indexTimeline),
+						c.getLong(indexChecksum));
+				if (timeline != null) {
+					patternList.add(PatternMaker.make(name, timeline));
+				}
+			} while (c.moveToNext());
+		}
+		if (c != null && !c.isClosed()) {
+			c.close();
+			c = null;
+		}
+		return patternList;
+	}
+
+	/**
+	 * @return decoded timeline or null if the stored data is corrupt
+	 */
+	private static Timeline decode(String name, byte[] data, long checksum) {
+		if (data == null || TimelineCodec.checksum(data) != checksum) {
+			Log.w(TAG, "Checksum mismatch, skipping pattern " + name);
+			return null;
+		}
+		try {
+			return TimelineCodec.decode(data);
+		} catch (IllegalArgumentException e) {
+			Log.w(TAG, "Cannot decode pattern " + name, e);
+			return null;
+		}
+	}
+
+	private SQLiteStatement getInsertRowStatement() {
+		if (mInsertRow == null) {
+			mInsertRow = mVibratorDB.compileStatement(PatternTable.INSERT_ROW);
+		}
+		return mInsertRow;
+	}
+
+	private SQLiteStatement getDeleteByNameStatement() {
+		if (mDeleteByName == null) {
+			mDeleteByName = mVibratorDB
+					.compileStatement(PatternTable.DELETE_BY_NAME);
+		}
+		return mDeleteByName;
+	}
+
+	private static void insertPattern(IVibrationPattern pattern,
+			SQLiteStatement insertRow) {
+		final Timeline timeline = pattern.getTimeline();
+		final byte[] data = TimelineCodec.encode(timeline);
+		insertRow.bindString(1, pattern.getName());
+		insertRow.bindLong(2, timeline.size());
+		insertRow.bindLong(3, timeline.getTotalDuration());
+		insertRow.bindLong(4, TimelineCodec.checksum(data));
+		insertRow.bindBlob(5, data);
+		insertRow.executeInsert();
+	}
+
+	private static void insertPatterns(Collection<IVibrationPattern> patterns,
+			SQLiteDatabase db) {
+		final SQLiteStatement insertRow = db
+				.compileStatement(PatternTable.INSERT_ROW);
+		try {
+			for (IVibrationPattern pattern : patterns) {
+				insertPattern(pattern, insertRow);
+			}
+		} finally {
+			insertRow.close();
+		}
+	}
+
+	/**
+	 * Reads all patterns stored with the version 1 schema.
+	 */
+	private static Collection<IVibrationPattern> getLegacyPatterns(
+			SQLiteDatabase db) {
+		final String orderBy = LEGACY_NAME_COLUMN + " asc, "
+				+ LEGACY_PAIR_NO_COLUMN + " asc";
+		Cursor c = db.query(LEGACY_TABLE_NAME, null, null, null, null, null,
 				orderBy);
 		Collection<IVibrationPattern> patternList = new ArrayList<IVibrationPattern>();
 		if (c.moveToFirst()) {
-			final int indexName = c.getColumnIndexOrThrow(NAME_COLUMN);
-			final int indexUptime = c.getColumnIndexOrThrow(UPTIME_COLUMN);
-			final int indexDowntime = c.getColumnIndexOrThrow(DOWNTIME_COLUMN);
-			List<Pair<Integer, Integer>> pattern = new ArrayList<Pair<Integer, Integer>>();
+			final int indexName = c.getColumnIndexOrThrow(LEGACY_NAME_COLUMN);
+			final int indexUptime = c
+					.getColumnIndexOrThrow(LEGACY_UPTIME_COLUMN);
+			final int indexDowntime = c
+					.getColumnIndexOrThrow(LEGACY_DOWNTIME_COLUMN);
+			final Timeline.Builder timeline = new Timeline.Builder();
 			String prevName = null;
 			do {
 				final String name = c.getString(indexName);
@@ -119,16 +320,15 @@ class SQLitePersister implements IPersister {
 				final int downtime = c.getInt(indexDowntime);
 				if (prevName != null && !prevName.equals(name)) {// found new
 					// pattern
-					patternList.add(PatternMaker.make(prevName, pattern));
-					pattern = new ArrayList<Pair<Integer, Integer>>();
+					patternList.add(PatternMaker.make(prevName, timeline
+							.build()));
+					timeline.clear();
 				}
-				final Pair<Integer, Integer> pair = new Pair<Integer, Integer>(
-						uptime, downtime);
-				pattern.add(pair);
+				timeline.add(uptime, downtime);
 				prevName = name;
 			} while (c.moveToNext());
-			if (!pattern.isEmpty()) {
-				patternList.add(PatternMaker.make(prevName, pattern));
+			if (!timeline.isEmpty()) {
+				patternList.add(PatternMaker.make(prevName, timeline.build()));
 			}
 		}
 		if (c != null && !c.isClosed()) {
@@ -138,46 +338,36 @@ class SQLitePersister implements IPersister {
 		return patternList;
 	}
 
-	private void insertRow(String patternName, int pairNo, int uptime,
-			int downtime, SQLiteDatabase db) {
-		ContentValues cv = new ContentValues(4);
-		cv.put(NAME_COLUMN, patternName);
-		cv.put(PAIR_NO_COLUMN, pairNo);
-		cv.put(UPTIME_COLUMN, uptime);
-		cv.put(DOWNTIME_COLUMN, downtime);
-		db.insert(TABLE_NAME, null, cv);
-	}
-
 	private class VibratorOpenHelper extends SQLiteOpenHelper {
 
 		public VibratorOpenHelper() {
-			super(mContext, DATABASE_NAME, null, DATABASE_VERSION);
+			super(mContext, DATABASE_NAME, null, PatternTable.VERSION);
 		}
 
 		@Override
 		public void onCreate(SQLiteDatabase db) {
-			final String TABLE_CREATE = "create table " + TABLE_NAME + " ("
-					+ NAME_COLUMN + " text, " + PAIR_NO_COLUMN + " integer, "
-					+ UPTIME_COLUMN + " integer, " + DOWNTIME_COLUMN
-					+ " integer, unique(" + NAME_COLUMN + ", " + PAIR_NO_COLUMN
-					+ ") on conflict replace);";
-			db.execSQL(TABLE_CREATE);
+			createTable(db);
 			// persist predefined patterns
-			final List<IVibrationPattern> predefinedPatterns = VibratorUtility
-					.getPredefinedPatterns(mContext);
-			for (IVibrationPattern pattern : predefinedPatterns) {
-				final String patternName = pattern.getName();
-				final List<Pair<Integer, Integer>> pairs = pattern.getPattern();
-				int pairNo = 1;
-				for (Pair<Integer, Integer> pair : pairs) {
-					insertRow(patternName, pairNo++, pair.first, pair.second,
-							db);
-				}
-			}
+			insertPatterns(VibratorUtility.getPredefinedPatterns(mContext), db);
 		}
 
 		@Override
 		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+			if (oldVersion < 2) {
+				// one BLOB row per pattern instead of one row per pair
+				createTable(db);
+				insertPatterns(getLegacyPatterns(db), db);
+				db.execSQL("drop table if exists " + LEGACY_TABLE_NAME + ";");
+			}
+			if (oldVersion < 3) {
+				// patterns stored before captures were compacted
+				insertPatterns(PatternCompactor.compactAll(readPatterns(db),
+						PatternCompactor.DEFAULT_THRESHOLD), db);
+			}
+		}
+
+		private void createTable(SQLiteDatabase db) {
+			db.execSQL(PatternTable.CREATE);
 		}
 	}
 
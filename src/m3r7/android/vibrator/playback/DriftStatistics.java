@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.playback;
+
+/**
+ * How late segments started compared to their scheduled start time.
+ */
+public final class DriftStatistics {
+
+	private final int count;
+	private final long total;
+	private final long max;
+
+	DriftStatistics(int count, long total, long max) {
+		this.count = count;
+		this.total = total;
+		this.max = max;
+	}
+
+	/**
+	 * @return number of segments started
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return average lateness in milliseconds
+	 */
+	public double getMean() {
+		return count == 0 ? 0d : (double) total / count;
+	}
+
+	/**
+	 * @return largest lateness in milliseconds
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "DriftStatistics[segments=" + count + ", mean=" + getMean()
+				+ "ms, max=" + max + "ms]";
+	}
+
+}
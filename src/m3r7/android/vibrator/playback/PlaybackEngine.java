@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.playback;
+
+import m3r7.android.vibrator.IVibratorOutput;
+import m3r7.android.vibrator.pattern.Timeline;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Plays timelines on an {@link IVibratorOutput} from a dedicated thread, one
+ * segment at a time and repeating {@link Timeline#getLoop()} until stopped.
+ * Each segment is scheduled at an absolute time derived from the start of
+ * the playback, so late segments do not push back the ones after them, and
+ * the lateness of every segment is recorded in the {@link DriftStatistics}.
+ * <p>
+ * Segments are read from the timeline in small windows and only the current
+ * one is handed to the output, so timelines of any length can be played in
+ * bounded memory and switching to another timeline takes effect at
+ * the next segment boundary without cancelling the running vibration.
+ */
+public class PlaybackEngine {
+
+	private static final String TAG = "PlaybackEngine";
+	private static final String THREAD_NAME = "VibratorPlayback";
+	/*
+	 * segments running late by more than this are rescheduled from now on
+	 * instead of trying to catch up
+	 */
+	private static final long MAX_LATENESS = 1000L;
+	// segments read from the timeline at once
+	private static final int WINDOW_SEGMENTS = 32;
+
+	private final IVibratorOutput output;
+	private final HandlerThread thread;
+	private final Handler handler;
+	private final Runnable tick = new Runnable() {
+		@Override
+		public void run() {
+			playSegment();
+		}
+	};
+
+	// accessed on the playback thread only
+	private Timeline current;
+	private Timeline next;
+	private int index;
+	// durations of the segments windowStart, windowStart + 1, ...
+	private final long[] window = new long[WINDOW_SEGMENTS * 2];
+	private int windowStart;
+	private int windowSize;
+	private long deadline;
+	private boolean playing;
+
+	// guarded by this
+	private int driftCount;
+	private long driftTotal;
+	private long driftMax;
+
+	public PlaybackEngine(IVibratorOutput output) {
+		this.output = output;
+		thread = new HandlerThread(THREAD_NAME,
+				Process.THREAD_PRIORITY_AUDIO);
+		thread.start();
+		handler = new Handler(thread.getLooper());
+	}
+
+	/**
+	 * Plays timeline from its first segment after delay, replacing whatever
+	 * is playing now.
+	 */
+	public void play(final Timeline timeline, final long delay) {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				start(timeline.getLoop(), delay);
+			}
+		});
+	}
+
+	/**
+	 * Lets the segment being played finish and continues with the first
+	 * segment of timeline, or starts it right away if nothing is playing.
+	 */
+	public void switchTo(final Timeline timeline) {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				if (playing) {
+					next = timeline.getLoop();
+				} else {
+					start(timeline.getLoop(), 0L);
+				}
+			}
+		});
+	}
+
+	public void stop() {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				halt();
+			}
+		});
+	}
+
+	/**
+	 * Stops playing and ends the playback thread. No calls may be made
+	 * afterwards.
+	 */
+	public void release() {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				halt();
+				thread.quit();
+			}
+		});
+	}
+
+	public synchronized DriftStatistics getDriftStatistics() {
+		return new DriftStatistics(driftCount, driftTotal, driftMax);
+	}
+
+	private void start(Timeline timeline, long delay) {
+		handler.removeCallbacks(tick);
+		output.cancel();
+		next = null;
+		if (timeline.getTotalDuration() == 0L) {
+			halt();// nothing to play, and it would never advance
+			return;
+		}
+		current = timeline;
+		index = 0;
+		windowSize = 0;
+		playing = true;
+		deadline = SystemClock.uptimeMillis() + delay;
+		handler.postAtTime(tick, deadline);
+	}
+
+	private void halt() {
+		handler.removeCallbacks(tick);
+		output.cancel();
+		if (playing) {
+			playing = false;
+			Log.d(TAG, getDriftStatistics().toString());
+		}
+		current = null;
+		next = null;
+		windowSize = 0;
+	}
+
+	private void playSegment() {
+		if (!playing) {
+			return;
+		}
+		final long now = SystemClock.uptimeMillis();
+		final long lateness = now - deadline;
+		recordDrift(lateness);
+		if (lateness > MAX_LATENESS) {
+			deadline = now;
+		}
+		if (next != null) {
+			current = next;
+			next = null;
+			index = 0;
+			windowSize = 0;
+			if (current.getTotalDuration() == 0L) {
+				halt();
+				return;
+			}
+		}
+		if (index >= current.size()) {
+			index = 0;
+		}
+		if (index < windowStart || index >= windowStart + windowSize) {
+			windowStart = index;
+			windowSize = current.read(index, window, 0, WINDOW_SEGMENTS);
+		}
+		final long vibration = window[(index - windowStart) * 2];
+		final long silence = window[(index - windowStart) * 2 + 1];
+		index++;
+		if (vibration > 0) {
+			output.vibrate(vibration);
+		}
+		deadline += vibration + silence;
+		handler.postAtTime(tick, deadline);
+	}
+
+	private synchronized void recordDrift(long lateness) {
+		driftCount++;
+		driftTotal += lateness;
+		driftMax = Math.max(driftMax, lateness);
+	}
+
+}
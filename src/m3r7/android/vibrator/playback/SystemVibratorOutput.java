@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.playback;
+
+import m3r7.android.vibrator.IVibratorOutput;
+import android.os.Vibrator;
+
+class SystemVibratorOutput implements IVibratorOutput {
+
+	private final Vibrator vibrator;
+
+	SystemVibratorOutput(Vibrator vibrator) {
+		this.vibrator = vibrator;
+	}
+
+	@Override
+	public void vibrate(long millis) {
+		vibrator.vibrate(millis);
+	}
+
+	@Override
+	public void cancel() {
+		vibrator.cancel();
+	}
+
+}
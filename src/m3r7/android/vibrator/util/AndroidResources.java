@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.util;
+
+import m3r7.android.vibrator.IResources;
+import android.content.Context;
+import android.content.res.Resources;
+
+/**
+ * {@link IResources} backed by the resources of a context.
+ */
+public class AndroidResources implements IResources {
+
+	private final Resources resources;
+
+	public AndroidResources(Context context) {
+		this.resources = context.getResources();
+	}
+
+	@Override
+	public String getString(int id) {
+		return resources.getString(id);
+	}
+
+	@Override
+	public String[] getStringArray(int id) {
+		return resources.getStringArray(id);
+	}
+
+	@Override
+	public int[] getIntArray(int id) {
+		return resources.getIntArray(id);
+	}
+
+	@Override
+	public int getInteger(int id) {
+		return resources.getInteger(id);
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.util;
+
+import m3r7.android.vibrator.command.CommandExecutor;
+import android.os.Handler;
+
+/**
+ * Runs the tasks of a {@link CommandExecutor} on the looper of the thread it
+ * was created on.
+ */
+public class HandlerScheduler implements CommandExecutor.Scheduler {
+
+	private final Handler handler = new Handler();
+
+	@Override
+	public void schedule(Runnable task, long delayMillis) {
+		handler.postDelayed(task, delayMillis);
+	}
+
+	@Override
+	public void unschedule(Runnable task) {
+		handler.removeCallbacks(task);
+	}
+
+}
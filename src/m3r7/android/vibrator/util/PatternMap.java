@@ -16,6 +16,9 @@
 
 package m3r7.android.vibrator.util;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -23,7 +26,17 @@ import m3r7.android.vibrator.IVibrationPattern;
 
 public abstract class PatternMap {
 
+	private static final int MAX_CACHED_SCALINGS = 16;
+
 	private final Map<String, IVibrationPattern> patterns;
+	private final ScaledPatternCache scaledCache = new ScaledPatternCache(
+			MAX_CACHED_SCALINGS);
+	/*
+	 * names put or removed since creation (or the last call to
+	 * clearChanges()), used to persist only what has changed
+	 */
+	private final Set<String> dirtyNames = new HashSet<String>();
+	private final Set<String> removedNames = new HashSet<String>();
 
 	protected abstract void onModified();
 
@@ -37,12 +50,32 @@ public abstract class PatternMap {
 
 	public IVibrationPattern put(String name, IVibrationPattern pattern) {
 		IVibrationPattern returnVal = patterns.put(name, pattern);
+		scaledCache.invalidate(name);
+		removedNames.remove(name);
+		dirtyNames.add(name);
 		onModified();
 		return returnVal;
 	}
 
 	public IVibrationPattern remove(String name) {
 		IVibrationPattern returnVal = patterns.remove(name);
+		scaledCache.invalidate(name);
+		dirtyNames.remove(name);
+		if (returnVal != null) {
+			removedNames.add(name);
+		}
+		onModified();
+		return returnVal;
+	}
+
+	/**
+	 * Removes the pattern from this map only, the stored pattern is neither
+	 * deleted nor written.
+	 */
+	public IVibrationPattern discard(String name) {
+		IVibrationPattern returnVal = patterns.remove(name);
+		scaledCache.invalidate(name);
+		dirtyNames.remove(name);
 		onModified();
 		return returnVal;
 	}
@@ -51,6 +84,22 @@ public abstract class PatternMap {
 		return patterns.get(name);
 	}
 
+	/**
+	 * @return the pattern with the given name scaled by modifier, or null if
+	 *         there is no such pattern
+	 */
+	public IVibrationPattern getScaled(String name, int modifier) {
+		final IVibrationPattern pattern = patterns.get(name);
+		if (pattern == null) {
+			return null;
+		}
+		return scaledCache.get(pattern, modifier);
+	}
+
+	public ScaledPatternCache getScaledCache() {
+		return scaledCache;
+	}
+
 	public boolean isEmpty() {
 		return patterns.isEmpty();
 	}
@@ -63,6 +112,34 @@ public abstract class PatternMap {
 		return patterns.keySet();
 	}
 
+	public boolean hasChanges() {
+		return !dirtyNames.isEmpty() || !removedNames.isEmpty();
+	}
+
+	/**
+	 * @return patterns put since the last call to {@link #clearChanges()}
+	 */
+	public Collection<IVibrationPattern> getDirtyPatterns() {
+		final Collection<IVibrationPattern> dirty = new ArrayList<IVibrationPattern>(
+				dirtyNames.size());
+		for (String name : dirtyNames) {
+			dirty.add(patterns.get(name));
+		}
+		return dirty;
+	}
+
+	/**
+	 * @return names removed since the last call to {@link #clearChanges()}
+	 */
+	public Set<String> getRemovedNames() {
+		return new HashSet<String>(removedNames);
+	}
+
+	public void clearChanges() {
+		dirtyNames.clear();
+		removedNames.clear();
+	}
+
 	public Map<String, IVibrationPattern> getWrappedObject() {
 		return patterns;
 	}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package m3r7.android.vibrator.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import m3r7.android.vibrator.IVibrationPattern;
+
+/**
+ * Bounded LRU cache of scaled patterns keyed by (pattern name, modifier), so
+ * that stepping back and forth between scaling levels does not rebuild the
+ * same timeline over and over.
+ */
+public class ScaledPatternCache {
+
+	private final LinkedHashMap<Key, IVibrationPattern> entries;
+	private final Key probe = new Key();
+	private int hitCount;
+	private int missCount;
+
+	public ScaledPatternCache(final int maxEntries) {
+		entries = new LinkedHashMap<Key, IVibrationPattern>(maxEntries + 1,
+				1.0f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Key, IVibrationPattern> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @return pattern scaled by the given modifier, computed at most once per
+	 *         (pattern, modifier) while the entry stays in the cache
+	 */
+	public IVibrationPattern get(IVibrationPattern pattern, int modifier) {
+		if (modifier == 0) {
+			return pattern;
+		}
+		probe.name = pattern.getName();
+		probe.modifier = modifier;
+		IVibrationPattern scaled = entries.get(probe);
+		if (scaled != null) {
+			hitCount++;
+			return scaled;
+		}
+		missCount++;
+		scaled = pattern.scale(modifier);
+		entries.put(new Key(pattern.getName(), modifier), scaled);
+		return scaled;
+	}
+
+	/**
+	 * Drops every scaled variant of the pattern with the given name.
+	 */
+	public void invalidate(String name) {
+		final Iterator<Key> iterator = entries.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().name.equals(name)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public int getHitCount() {
+		return hitCount;
+	}
+
+	public int getMissCount() {
+		return missCount;
+	}
+
+	@Override
+	public String toString() {
+		return "ScaledPatternCache[size=" + entries.size() + ", hits="
+				+ hitCount + ", misses=" + missCount + "]";
+	}
+
+	private static class Key {
+		String name;
+		int modifier;
+
+		Key() {
+		}
+
+		Key(String name, int modifier) {
+			this.name = name;
+			this.modifier = modifier;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) o;
+			return modifier == other.modifier && name.equals(other.name);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * name.hashCode() + modifier;
+		}
+	}
+
+}
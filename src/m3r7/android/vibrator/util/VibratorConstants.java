@@ -24,6 +24,15 @@ public interface VibratorConstants {
 	int MILLIS_IN_SECOND = 1000;
 	long[] INDEFINITELY = { 0, 6000, 0 };
 	Pattern WHITESPACE = Pattern.compile("\\s+");
+	/**
+	 * RecognizerIntent.EXTRA_CONFIDENCE_SCORES, which only exists as a constant
+	 * from API level 14 on
+	 */
+	String EXTRA_CONFIDENCE_SCORES = "android.speech.extra.CONFIDENCE_SCORES";
+	/**
+	 * SpeechRecognizer.CONFIDENCE_SCORES, API level 14 as well
+	 */
+	String RESULTS_CONFIDENCE_SCORES = "confidence_scores";
 
 	public interface MENU_ID {
 		int DEFINE_PATTERN = Menu.FIRST;
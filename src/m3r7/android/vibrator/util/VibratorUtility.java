@@ -16,8 +16,8 @@
 
 package m3r7.android.vibrator.util;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 import m3r7.android.vibrator.ICommand;
 import m3r7.android.vibrator.IVibrationPattern;
@@ -25,40 +25,11 @@ import m3r7.android.vibrator.R;
 import m3r7.android.vibrator.command.CommandMaker;
 import m3r7.android.vibrator.pattern.PatternMaker;
 import android.content.Context;
-import android.util.Pair;
 
 public class VibratorUtility {
-	public static List<Pair<Integer, Integer>> toPairList(int[] arr) {
-		List<Pair<Integer, Integer>> pairList = new ArrayList<Pair<Integer, Integer>>();
-		boolean isFirstOfPair = true;
-		int firstOfPair = 0;
-		for (int i : arr) {
-			if (isFirstOfPair) {
-				firstOfPair = i;
-			} else {
-				pairList.add(new Pair<Integer, Integer>(firstOfPair, i));
-			}
-			isFirstOfPair = !isFirstOfPair;
-		}
-		return pairList;
-	}
-
-	public static List<Pair<Integer, Integer>> toPairList(List<Integer> list) {
-		int[] arr = new int[list.size()];
-		int arrIndex = 0;
-		for (int i : list) {
-			arr[arrIndex++] = i;
-		}
-		return toPairList(arr);
-	}
-
-	public static long getSumOfElements(List<Integer> list) {
-		long sum = 0L;
-		for (Integer i : list) {
-			sum += i.longValue();
-		}
-		return sum;
-	}
+	// command list of commandsListLocale, see getCommandsList
+	private static List<ICommand> commandsList;
+	private static Locale commandsListLocale;
 
 	/**
 	 * This method is called when the database gets created. Following the
@@ -69,25 +40,7 @@ public class VibratorUtility {
 	 * @return
 	 */
 	public static List<IVibrationPattern> getPredefinedPatterns(Context context) {
-		// continious
-		final String nameContinious = context
-				.getString(R.string.predefined_pattern_continuous);
-		final int[] arrContinious = context.getResources().getIntArray(
-				R.array.predefined_pattern_continuous);
-		final IVibrationPattern continious = PatternMaker.make(nameContinious,
-				VibratorUtility.toPairList(arrContinious));
-		// regular
-		final String nameRegular = context
-				.getString(R.string.predefined_pattern_regular);
-		final int[] arrRegular = context.getResources().getIntArray(
-				R.array.predefined_pattern_regular);
-		final IVibrationPattern regular = PatternMaker.make(nameRegular,
-				VibratorUtility.toPairList(arrRegular));
-
-		List<IVibrationPattern> predefinedPatterns = new ArrayList<IVibrationPattern>();
-		predefinedPatterns.add(continious);
-		predefinedPatterns.add(regular);
-		return predefinedPatterns;
+		return PatternMaker.makePredefined(new AndroidResources(context));
 	}
 
 	public static boolean hasText(String str) {
@@ -122,16 +75,17 @@ public class VibratorUtility {
 		return false;
 	}
 
-	public static List<ICommand> getCommandsList(Context context) {
-		final List<ICommand> commandList = new ArrayList<ICommand>();
-		final String[] names = context.getResources().getStringArray(
-				R.array.command_names);
-		final String[] descriptions = context.getResources().getStringArray(
-				R.array.command_descriptions);
-		for (int i = 0; i < names.length; i++) {
-			commandList.add(CommandMaker.make(names[i], descriptions[i]));
+	/**
+	 * @return the command list of the current locale, built once and shared
+	 */
+	public static synchronized List<ICommand> getCommandsList(Context context) {
+		final Locale locale = context.getResources().getConfiguration().locale;
+		if (commandsList != null && locale.equals(commandsListLocale)) {
+			return commandsList;
 		}
-		return commandList;
+		commandsList = CommandMaker.makeList(new AndroidResources(context));
+		commandsListLocale = locale;
+		return commandsList;
 	}
 
 }
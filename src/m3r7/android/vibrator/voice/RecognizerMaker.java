@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.voice;
+
+import m3r7.android.vibrator.IRecognizer;
+import android.content.Context;
+import android.os.Build;
+
+public class RecognizerMaker {
+	/**
+	 * @return a recognizer running in this process, or null if the platform
+	 *         is older than API level 8 or has no recognition service
+	 */
+	public static IRecognizer make(Context context) {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.FROYO
+				|| !SpeechRecognizerAdapter.isAvailable(context)) {
+			return null;
+		}
+		return new SpeechRecognizerAdapter(context);
+	}
+}
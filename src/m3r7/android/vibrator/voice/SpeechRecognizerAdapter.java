@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.voice;
+
+import java.util.Collections;
+import java.util.List;
+
+import m3r7.android.vibrator.IRecognizer;
+import m3r7.android.vibrator.util.VibratorConstants;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.speech.RecognitionListener;
+import android.speech.RecognizerIntent;
+import android.speech.SpeechRecognizer;
+
+/**
+ * {@link IRecognizer} on top of the platform {@link SpeechRecognizer}, which
+ * exists from API level 8 on. Must only be loaded after checking the API
+ * level, see {@link RecognizerMaker}.
+ */
+class SpeechRecognizerAdapter implements IRecognizer, RecognitionListener {
+
+	private static final int MAX_RESULTS = 5;
+
+	private final SpeechRecognizer recognizer;
+	private final Intent intent;
+	private Listener listener;
+
+	SpeechRecognizerAdapter(Context context) {
+		recognizer = SpeechRecognizer.createSpeechRecognizer(context);
+		recognizer.setRecognitionListener(this);
+		intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
+		intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL,
+				RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
+		intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
+		intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, MAX_RESULTS);
+	}
+
+	static boolean isAvailable(Context context) {
+		return SpeechRecognizer.isRecognitionAvailable(context);
+	}
+
+	@Override
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void startListening() {
+		recognizer.startListening(intent);
+	}
+
+	@Override
+	public void cancel() {
+		recognizer.cancel();
+	}
+
+	@Override
+	public void destroy() {
+		recognizer.destroy();
+	}
+
+	@Override
+	public void onPartialResults(Bundle partialResults) {
+		if (listener != null) {
+			listener.onPartialResults(getHypotheses(partialResults));
+		}
+	}
+
+	@Override
+	public void onResults(Bundle results) {
+		if (listener != null) {
+			listener.onResults(getHypotheses(results), results
+					.getFloatArray(VibratorConstants.RESULTS_CONFIDENCE_SCORES));
+		}
+	}
+
+	@Override
+	public void onError(int error) {
+		if (listener != null) {
+			listener.onError(error == SpeechRecognizer.ERROR_NO_MATCH
+					|| error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT);
+		}
+	}
+
+	@Override
+	public void onReadyForSpeech(Bundle params) {
+	}
+
+	@Override
+	public void onBeginningOfSpeech() {
+	}
+
+	@Override
+	public void onRmsChanged(float rmsdB) {
+	}
+
+	@Override
+	public void onBufferReceived(byte[] buffer) {
+	}
+
+	@Override
+	public void onEndOfSpeech() {
+	}
+
+	@Override
+	public void onEvent(int eventType, Bundle params) {
+	}
+
+	private static List<String> getHypotheses(Bundle results) {
+		final List<String> hypotheses = results
+				.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+		return hypotheses != null ? hypotheses : Collections
+				.<String> emptyList();
+	}
+
+}
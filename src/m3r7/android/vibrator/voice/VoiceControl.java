@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2011 Mert Dönmez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package m3r7.android.vibrator.voice;
+
+import java.util.List;
+
+import m3r7.android.vibrator.IRecognizer;
+
+/**
+ * Keeps an {@link IRecognizer} listening for commands until stopped, starting
+ * a new utterance as soon as the previous one is done. Partial results are
+ * dispatched as they arrive; once one of them triggers a command, the rest of
+ * the utterance is ignored so that the command is not executed twice.
+ */
+public class VoiceControl implements IRecognizer.Listener {
+
+	public interface Callback {
+		/**
+		 * @param confidences
+		 *            confidence per hypothesis, null for partial results
+		 * @param partial
+		 *            true if the utterance is not finished yet
+		 * @return true if the hypotheses triggered a command
+		 */
+		boolean dispatch(List<String> hypotheses, float[] confidences,
+				boolean partial);
+
+		/**
+		 * Called when listening stopped because of a recognizer error.
+		 */
+		void onStopped();
+	}
+
+	private final IRecognizer recognizer;
+	private final Callback callback;
+	private boolean active;
+	// a command of the current utterance has already been dispatched
+	private boolean handled;
+
+	public VoiceControl(IRecognizer recognizer, Callback callback) {
+		this.recognizer = recognizer;
+		this.callback = callback;
+		recognizer.setListener(this);
+	}
+
+	public void start() {
+		if (!active) {
+			active = true;
+			listen();
+		}
+	}
+
+	public void stop() {
+		if (active) {
+			active = false;
+			recognizer.cancel();
+		}
+	}
+
+	/**
+	 * Stops listening and releases the recognizer.
+	 */
+	public void release() {
+		stop();
+		recognizer.destroy();
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	@Override
+	public void onPartialResults(List<String> hypotheses) {
+		if (active && !handled && !hypotheses.isEmpty()) {
+			handled = callback.dispatch(hypotheses, null, true);
+		}
+	}
+
+	@Override
+	public void onResults(List<String> hypotheses, float[] confidences) {
+		if (!active) {
+			return;
+		}
+		if (!handled && !hypotheses.isEmpty()) {
+			callback.dispatch(hypotheses, confidences, false);
+		}
+		// the command may have stopped voice control
+		if (active) {
+			listen();
+		}
+	}
+
+	@Override
+	public void onError(boolean recoverable) {
+		if (!active) {
+			return;
+		}
+		if (recoverable) {
+			listen();
+		} else {
+			active = false;
+			callback.onStopped();
+		}
+	}
+
+	private void listen() {
+		handled = false;
+		recognizer.startListening();
+	}
+
+}